@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.clerezza.rdf.core.UriRef;
+
+/**
+ * The state of the disambiguation of a single content item. A context is
+ * created for every call of
+ * {@link FOAFDisambiguationEngine#computeEnhancements(org.apache.stanbol.enhancer.servicesapi.ContentItem)}
+ * so that content items processed concurrently do not share any data.
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+public class DisambiguationContext {
+
+	private final String foafNamespace;
+	// the data of all entity annotations suggested for the content
+	private final SuggestionTable suggestionTable = new SuggestionTable();
+	// all entity annotations suggested for the content
+	private final Map<UriRef, EntityAnnotation> allEntityAnnotations = new HashMap<UriRef, EntityAnnotation>();
+	// all the URIReferences of entities and the entities which are linked to
+	// those URIreferences
+	// key: URIReference value: Set<EntityAnnotation>
+	private final Map<String, Set<UriRef>> urisReferencedByEntities = new HashMap<String, Set<UriRef>>();
+	// correlation scores extracted from URIReference correlations of the
+	// suggested entities
+	private final SortedSet<Integer> correlationScoresOfEntities = new TreeSet<Integer>();
+
+	/**
+	 * @param foafNamespace
+	 *            the namespace used to look up the foaf:name of entities
+	 */
+	public DisambiguationContext(String foafNamespace) {
+		this.foafNamespace = foafNamespace;
+	}
+
+	public String getFoafNamespace() {
+		return foafNamespace;
+	}
+
+	/**
+	 * @return the table storing the data of the {@link EntityAnnotation}s
+	 */
+	public SuggestionTable getSuggestionTable() {
+		return suggestionTable;
+	}
+
+	/**
+	 * @return the dereferenced entity annotations by entity URI
+	 */
+	public Map<UriRef, EntityAnnotation> getAllEntityAnnotations() {
+		return allEntityAnnotations;
+	}
+
+	/**
+	 * @return the entities referencing an URI by URI reference
+	 */
+	public Map<String, Set<UriRef>> getUrisReferencedByEntities() {
+		return urisReferencedByEntities;
+	}
+
+	/**
+	 * @return the correlation scores used to normalize the correlation
+	 *         confidences
+	 */
+	public SortedSet<Integer> getCorrelationScoresOfEntities() {
+		return correlationScoresOfEntities;
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.clerezza.rdf.core.LiteralFactory;
+import org.apache.clerezza.rdf.core.Resource;
+import org.apache.clerezza.rdf.core.Triple;
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.clerezza.rdf.core.impl.TripleImpl;
+import org.apache.stanbol.entityhub.servicesapi.model.Reference;
+import org.apache.stanbol.entityhub.servicesapi.model.Representation;
+
+/**
+ * Collects the triples explaining the disambiguated confidence of
+ * {@link EntityAnnotation}s: the top correlating entities and shared URI
+ * references, the foaf:name match score and the component confidences. The
+ * triples are buffered so that they can be added to the metadata with a single
+ * bulk operation. The number of buffered triples is limited per content item
+ * and the correlations are only calculated for the explained entity
+ * annotations.
+ */
+public class DisambiguationExplanation {
+
+	public static final String NAMESPACE = "http://stanbol.apache.org/ontology/disambiguation/foaf#";
+	/**
+	 * An entity sharing URI references with the suggested entity
+	 */
+	public static final UriRef CORRELATED_ENTITY = new UriRef(NAMESPACE
+			+ "correlated-entity");
+	/**
+	 * An URI reference shared with other suggested entities
+	 */
+	public static final UriRef SHARED_REFERENCE = new UriRef(NAMESPACE
+			+ "shared-reference");
+	/**
+	 * The foaf:name match score
+	 */
+	public static final UriRef FOAF_NAME_SCORE = new UriRef(NAMESPACE
+			+ "foaf-name-score");
+	/**
+	 * The original confidence before disambiguation
+	 */
+	public static final UriRef ORIGINAL_CONFIDENCE = new UriRef(NAMESPACE
+			+ "original-confidence");
+	/**
+	 * The weighted foaf:name disambiguated confidence
+	 */
+	public static final UriRef FOAF_NAME_CONFIDENCE = new UriRef(NAMESPACE
+			+ "foaf-name-confidence");
+	/**
+	 * The weighted URI correlation disambiguated confidence
+	 */
+	public static final UriRef CORRELATION_CONFIDENCE = new UriRef(NAMESPACE
+			+ "correlation-confidence");
+
+	/**
+	 * The number of triples added for every explained entity annotation
+	 */
+	private static final int SCALAR_TRIPLES = 4;
+
+	private final Map<String, Set<UriRef>> urisReferencedByEntities;
+	private final LiteralFactory literalFactory;
+	private final int topN;
+	private final int maxTriples;
+	private final List<Triple> triples = new ArrayList<Triple>();
+	private boolean truncated;
+
+	/**
+	 * @param urisReferencedByEntities
+	 *            the URI references and the entities referencing them
+	 * @param topN
+	 *            the maximum number of correlated entities and shared
+	 *            references explained per entity annotation
+	 * @param maxTriples
+	 *            the maximum number of triples buffered for the content item
+	 * @param literalFactory
+	 *            used to create typed literals
+	 */
+	public DisambiguationExplanation(
+			Map<String, Set<UriRef>> urisReferencedByEntities, int topN,
+			int maxTriples, LiteralFactory literalFactory) {
+		this.urisReferencedByEntities = urisReferencedByEntities;
+		this.topN = topN;
+		this.maxTriples = maxTriples;
+		this.literalFactory = literalFactory;
+	}
+
+	/**
+	 * Buffers the triples explaining the confidence of the parsed entity
+	 * annotation. The disambiguated confidences need to be calculated before.
+	 * The correlated entities and shared references are only calculated for
+	 * explained entity annotations. Entity annotations are either explained
+	 * with all their scalar values or not at all.
+	 *
+	 * @param ea
+	 *            the entity annotation
+	 * @return <code>false</code> if the maximum number of triples is reached
+	 */
+	public boolean explain(EntityAnnotation ea) {
+		if (triples.size() + SCALAR_TRIPLES > maxTriples) {
+			truncated = true;
+			return false;
+		}
+		UriRef subject = ea.getUriLink();
+		add(subject, FOAF_NAME_SCORE,
+				literalFactory.createTypedLiteral(ea
+						.getFoafNameDisambiguationScore()));
+		add(subject, ORIGINAL_CONFIDENCE,
+				literalFactory.createTypedLiteral(ea.getOriginalConfidnece()));
+		add(subject, FOAF_NAME_CONFIDENCE,
+				literalFactory.createTypedLiteral(ea
+						.getFoafNameDisambiguatedConfidence()));
+		add(subject, CORRELATION_CONFIDENCE,
+				literalFactory.createTypedLiteral(ea
+						.getEntityReferenceDisambiguatedConfidence()));
+		if (ea.getEntity() == null || topN <= 0) {
+			return true;
+		}
+		// the references of the entity shared with other entities and the
+		// number of references shared with other entities
+		Set<String> sharedReferences = new HashSet<String>();
+		Map<UriRef, Integer> correlatedEntities = new HashMap<UriRef, Integer>();
+		Representation entityRep = ea.getEntity().getRepresentation();
+		Iterator<String> fields = entityRep.getFieldNames();
+		while (fields.hasNext()) {
+			Iterator<Reference> references = entityRep.getReferences(fields
+					.next());
+			while (references.hasNext()) {
+				String reference = references.next().getReference();
+				Set<UriRef> entities = urisReferencedByEntities.get(reference);
+				if (entities == null || entities.size() < 2
+						|| !sharedReferences.add(reference)) {
+					continue; // not shared or already counted
+				}
+				for (UriRef other : entities) {
+					if (!other.equals(ea.getEntityUri())) {
+						Integer count = correlatedEntities.get(other);
+						correlatedEntities.put(other, count == null ? 1
+								: count + 1);
+					}
+				}
+			}
+		}
+		for (UriRef entity : top(correlatedEntities)) {
+			if (!add(subject, CORRELATED_ENTITY, entity)) {
+				return false;
+			}
+		}
+		Map<String, Integer> sharingEntities = new HashMap<String, Integer>();
+		for (String reference : sharedReferences) {
+			sharingEntities.put(reference, urisReferencedByEntities
+					.get(reference).size());
+		}
+		for (String reference : top(sharingEntities)) {
+			if (!add(subject, SHARED_REFERENCE, new UriRef(reference))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Selects the {@link #topN} keys with the highest counts (descending).
+	 * Keys with the same count are ordered by their string representation.
+	 */
+	private <T> List<T> top(Map<T, Integer> counts) {
+		Comparator<Map.Entry<T, Integer>> byCount = new Comparator<Map.Entry<T, Integer>>() {
+			@Override
+			public int compare(Map.Entry<T, Integer> e1, Map.Entry<T, Integer> e2) {
+				int result = e1.getValue().compareTo(e2.getValue());
+				return result == 0 ? e2.getKey().toString()
+						.compareTo(e1.getKey().toString()) : result;
+			}
+		};
+		// keeps the topN entries, the head is the lowest of them
+		PriorityQueue<Map.Entry<T, Integer>> top = new PriorityQueue<Map.Entry<T, Integer>>(
+				topN + 1, byCount);
+		for (Map.Entry<T, Integer> entry : counts.entrySet()) {
+			top.add(entry);
+			if (top.size() > topN) {
+				top.poll();
+			}
+		}
+		List<T> keys = new ArrayList<T>(top.size());
+		while (!top.isEmpty()) {
+			keys.add(top.poll().getKey());
+		}
+		Collections.reverse(keys);
+		return keys;
+	}
+
+	private boolean add(UriRef subject, UriRef predicate, Resource object) {
+		if (triples.size() >= maxTriples) {
+			truncated = true;
+			return false;
+		}
+		triples.add(new TripleImpl(subject, predicate, object));
+		return true;
+	}
+
+	/**
+	 * @return the buffered triples
+	 */
+	public List<Triple> getTriples() {
+		return triples;
+	}
+
+	/**
+	 * @return if triples were dropped because the maximum number of triples
+	 *         was reached
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts how often entities are suggested for processed content items. The
+ * counts are periodically persisted so that the most frequently suggested
+ * entities can be preloaded into the {@link EntityCache} after a restart.
+ * <p>
+ * The persisted format is one line per entity with the tab separated count,
+ * Entityhub site and entity URI.
+ * </p>
+ * <p>
+ * The number of counted entities is bounded: if more than twice the
+ * configured maximum of entities are counted, the log is trimmed to the most
+ * frequently suggested ones. The log is also trimmed when written.
+ * </p>
+ */
+public class EntityAccessLog {
+
+	private static final Logger log = LoggerFactory
+			.getLogger(EntityAccessLog.class);
+
+	private static final String CHARSET = "UTF-8";
+	private static final char SEPARATOR = '\t';
+
+	private final ConcurrentMap<String, EntityAccess> accesses = new ConcurrentHashMap<String, EntityAccess>();
+	private final int maxEntries;
+	private final AtomicBoolean trimming = new AtomicBoolean();
+
+	/**
+	 * @param maxEntries
+	 *            the number of most frequently suggested entities kept when
+	 *            the log is trimmed
+	 */
+	public EntityAccessLog(int maxEntries) {
+		this.maxEntries = Math.max(maxEntries, 1);
+	}
+
+	/**
+	 * Records that the parsed entity was suggested
+	 *
+	 * @param site
+	 *            the Entityhub site of the entity
+	 * @param entityUri
+	 *            the URI of the entity
+	 */
+	public void record(String site, String entityUri) {
+		if (site == null || entityUri == null) {
+			return;
+		}
+		EntityAccess access = accesses.get(entityUri);
+		if (access == null) {
+			EntityAccess newAccess = new EntityAccess(site, entityUri, 0);
+			access = accesses.putIfAbsent(entityUri, newAccess);
+			if (access == null) {
+				access = newAccess;
+			}
+		}
+		access.count.incrementAndGet();
+		if (accesses.size() - maxEntries > maxEntries) {
+			trim();
+		}
+	}
+
+	/**
+	 * Removes all but the most frequently suggested entities. Suggestions of
+	 * removed entities recorded concurrently may get lost.
+	 */
+	void trim() {
+		// only one thread needs to trim
+		if (!trimming.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			if (accesses.size() <= maxEntries) {
+				return;
+			}
+			Set<String> kept = new HashSet<String>(maxEntries);
+			for (EntityAccess access : getMostFrequent(maxEntries)) {
+				kept.add(access.getEntityUri());
+			}
+			accesses.keySet().retainAll(kept);
+		} finally {
+			trimming.set(false);
+		}
+	}
+
+	/**
+	 * Getter for the most frequently suggested entities
+	 *
+	 * @param limit
+	 *            the maximum number of returned entities
+	 * @return the entities sorted by the number of suggestions (descending)
+	 */
+	public List<EntityAccess> getMostFrequent(int limit) {
+		// copy the counts as they may change while sorting
+		List<EntityAccess> sorted = new ArrayList<EntityAccess>(
+				accesses.size());
+		for (EntityAccess access : accesses.values()) {
+			sorted.add(new EntityAccess(access.site, access.entityUri,
+					access.getCount()));
+		}
+		Collections.sort(sorted, new Comparator<EntityAccess>() {
+			@Override
+			public int compare(EntityAccess a1, EntityAccess a2) {
+				return a2.getCount() - a1.getCount();
+			}
+		});
+		return sorted.size() > limit ? sorted.subList(0, limit) : sorted;
+	}
+
+	public int size() {
+		return accesses.size();
+	}
+
+	/**
+	 * Writes the most frequently suggested entities to the parsed file
+	 *
+	 * @param file
+	 *            the file to write to
+	 * @param limit
+	 *            the maximum number of entities written
+	 * @throws IOException
+	 *             on any error while writing the file
+	 */
+	public void write(File file, int limit) throws IOException {
+		trim();
+		// write to a temporary file first to not lose the previous log
+		File tmp = new File(file.getPath() + ".tmp");
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(tmp), CHARSET));
+		try {
+			for (EntityAccess access : getMostFrequent(limit)) {
+				writer.append(String.valueOf(access.getCount()))
+						.append(SEPARATOR).append(access.getSite())
+						.append(SEPARATOR).append(access.getEntityUri());
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Unable to replace entity access log "
+					+ file);
+		}
+		if (!tmp.renameTo(file)) {
+			throw new IOException("Unable to write entity access log " + file);
+		}
+	}
+
+	/**
+	 * Reads entity accesses previously written by {@link #write(File, int)}
+	 * and adds them to this log. Invalid lines are ignored.
+	 *
+	 * @param file
+	 *            the file to read from
+	 * @throws IOException
+	 *             on any error while reading the file
+	 */
+	public void read(File file) throws IOException {
+		if (!file.isFile()) {
+			return;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), CHARSET));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split(String.valueOf(SEPARATOR));
+				if (parts.length != 3) {
+					log.debug("ignore invalid entity access log line: {}", line);
+					continue;
+				}
+				try {
+					EntityAccess access = new EntityAccess(parts[1], parts[2],
+							Integer.parseInt(parts[0]));
+					EntityAccess existing = accesses.putIfAbsent(parts[2],
+							access);
+					if (existing != null) {
+						existing.count.addAndGet(access.getCount());
+					}
+				} catch (NumberFormatException e) {
+					log.debug("ignore invalid entity access log line: {}", line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		trim();
+	}
+
+	/**
+	 * The number of suggestions of an entity
+	 */
+	public static class EntityAccess {
+
+		private final String site;
+		private final String entityUri;
+		private final AtomicInteger count;
+
+		private EntityAccess(String site, String entityUri, int count) {
+			this.site = site;
+			this.entityUri = entityUri;
+			this.count = new AtomicInteger(count);
+		}
+
+		public String getSite() {
+			return site;
+		}
+
+		public String getEntityUri() {
+			return entityUri;
+		}
+
+		public int getCount() {
+			return count.get();
+		}
+	}
+}
@@ -35,7 +35,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * An abstraction of an EntityAnnotation
+ * An abstraction of an EntityAnnotation. Instances are views on a row of a
+ * {@link SuggestionTable} that stores the data of all suggestions of a
+ * content item.
  * 
  * @author Dileepa Jayakody
  */
@@ -60,18 +62,18 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	/**
 	 * The weight for foaf:name disambiguation scores
 	 */
-	private double foafNameDisambiguationWeight = FOAFNAME_DISAMBIGUATION_RATIO
+	private static final double foafNameDisambiguationWeight = FOAFNAME_DISAMBIGUATION_RATIO
 			/ (FOAFNAME_DISAMBIGUATION_RATIO + ORIGINAL_CONFIDNECE_RATIO + URI_CORRELATION_DISAMBIGUATION_RATIO);
 	/**
 	 * The weight for uri-correlation disambiguation scores
 	 */
-	private double uriCorrelationDisambiguationWeight = URI_CORRELATION_DISAMBIGUATION_RATIO
+	private static final double uriCorrelationDisambiguationWeight = URI_CORRELATION_DISAMBIGUATION_RATIO
 			/ (FOAFNAME_DISAMBIGUATION_RATIO + ORIGINAL_CONFIDNECE_RATIO + URI_CORRELATION_DISAMBIGUATION_RATIO);
 	/**
 	 * The weight for the original confidence scores
 	 * 
 	 */
-	private double confidenceWeight = ORIGINAL_CONFIDNECE_RATIO
+	private static final double confidenceWeight = ORIGINAL_CONFIDNECE_RATIO
 			/ (FOAFNAME_DISAMBIGUATION_RATIO + ORIGINAL_CONFIDNECE_RATIO + URI_CORRELATION_DISAMBIGUATION_RATIO);
 
 	private static final LiteralFactory lf = LiteralFactory.getInstance();
@@ -79,33 +81,25 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	private static final UriRef ENTITYHUB_SITE = new UriRef(
 			RdfResourceEnum.site.getUri());
 
-	private UriRef uriLink;
-	private UriRef entityUri;
-	private Entity entity;
-
-	private Double originalConfidence = 0.0;
-	// private Double entityReferenceDisambiguationScore = 0.0;
-	private Double foafNameDisambiguationScore = 0.0;
-	private Double disambiguatedConfidence = 0.0;
-	private Double entityReferenceDisambiguatedConfidence = 0.0;
-	private Double foafNameDisambiguatedConfidence = 0.0;
-	// the score assigned based on the number of uri correlations with other
-	// entities
-	private int correlationScore;
-	// uri-references from this entity
-	private int referencesFromEntity;
-	private String site;
-	private String entityType;
-	private String entityLabel;
-
-	private EntityAnnotation(UriRef entityAnnotation) {
-		this.uriLink = entityAnnotation;
+	/**
+	 * The table holding the data of this suggestion
+	 */
+	private final SuggestionTable table;
+	/**
+	 * The row of this suggestion in the {@link #table}
+	 */
+	private final int row;
+
+	private EntityAnnotation(SuggestionTable table) {
+		this.table = table;
+		this.row = table.addRow();
 	}
 
 	public EntityAnnotation(Entity entity) {
-		this.entity = entity;
-		this.entityUri = new UriRef(entity.getId());
-		this.site = entity.getSite();
+		this(new SuggestionTable(1));
+		table.setEntity(row, entity);
+		table.setEntityUri(row, new UriRef(entity.getId()));
+		table.setSite(row, entity.getSite());
 	}
 
 	/**
@@ -118,41 +112,63 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	 */
 	public static EntityAnnotation createFromUri(TripleCollection graph,
 			UriRef uri) {
-		EntityAnnotation entityAnnotation = new EntityAnnotation(uri);
-		entityAnnotation.entityUri = EnhancementEngineHelper.getReference(
-				graph, uri, Properties.ENHANCER_ENTITY_REFERENCE);
-		if (entityAnnotation.entityUri == null) {
+		return createFromUri(new SuggestionTable(1), graph, uri);
+	}
+
+	/**
+	 * Allows to create EntityAnnotations from existing fise:TextAnnotation
+	 * contained in the metadata of the processed {@link ContentItem}. The data
+	 * of the EntityAnnotation is stored in the parsed {@link SuggestionTable}.
+	 * 
+	 * @param table
+	 * @param graph
+	 * @param uri
+	 * @return EntityAnnotation
+	 */
+	public static EntityAnnotation createFromUri(SuggestionTable table,
+			TripleCollection graph, UriRef uri) {
+		UriRef entityUri = EnhancementEngineHelper.getReference(graph, uri,
+				Properties.ENHANCER_ENTITY_REFERENCE);
+		if (entityUri == null) {
 			// most likely not a fise:EntityAnnotation
 			log.debug("Unable to create Suggestion for EntityAnnotation {} "
 					+ "because property {} is not present", uri,
 					Properties.ENHANCER_ENTITY_REFERENCE);
 			return null;
 		}
-		entityAnnotation.originalConfidence = EnhancementEngineHelper.get(
-				graph, uri, Properties.ENHANCER_CONFIDENCE, Double.class, lf);
-		if (entityAnnotation.originalConfidence == null) {
+		EntityAnnotation entityAnnotation = new EntityAnnotation(table);
+		int row = entityAnnotation.row;
+		table.setUriLink(row, uri);
+		table.setEntityUri(row, entityUri);
+		Double originalConfidence = EnhancementEngineHelper.get(graph, uri,
+				Properties.ENHANCER_CONFIDENCE, Double.class, lf);
+		if (originalConfidence == null) {
 			log.warn("EntityAnnotation {} does not define a value for "
 					+ "property {}. Will use '0' as fallback", uri,
 					Properties.ENHANCER_CONFIDENCE);
-			entityAnnotation.originalConfidence = 0.0;
+		} else {
+			table.setOriginalConfidence(row, originalConfidence);
 		}
-		entityAnnotation.site = EnhancementEngineHelper.getString(graph, uri,
-				ENTITYHUB_SITE);
-		entityAnnotation.entityType = EnhancementEngineHelper.getString(graph,
-				uri, Properties.ENHANCER_ENTITY_TYPE);
-		entityAnnotation.entityLabel = EnhancementEngineHelper.getString(graph,
-				uri, Properties.ENHANCER_ENTITY_LABEL);
+		table.setSite(row,
+				EnhancementEngineHelper.getString(graph, uri, ENTITYHUB_SITE));
+		table.setEntityType(row, EnhancementEngineHelper.getString(graph, uri,
+				Properties.ENHANCER_ENTITY_TYPE));
+		table.setEntityLabel(row, EnhancementEngineHelper.getString(graph,
+				uri, Properties.ENHANCER_ENTITY_LABEL));
 		return entityAnnotation;
 	}
 
 	public void calculateDisambiguatedConfidence() {
-		this.disambiguatedConfidence = (originalConfidence * confidenceWeight)
-				+ this.foafNameDisambiguatedConfidence
-				+ this.entityReferenceDisambiguatedConfidence;
+		table.setDisambiguatedConfidence(row,
+				(table.getOriginalConfidence(row) * confidenceWeight)
+						+ table.getFoafNameDisambiguatedConfidence(row)
+						+ table.getEntityReferenceDisambiguatedConfidence(row));
 	}
 
 	public void calculateFoafNameDisambiguatedConfidence() {
-		this.foafNameDisambiguatedConfidence = (foafNameDisambiguationScore * foafNameDisambiguationWeight);
+		table.setFoafNameDisambiguatedConfidence(row,
+				table.getFoafNameDisambiguationScore(row)
+						* foafNameDisambiguationWeight);
 	}
 
 	/**
@@ -166,9 +182,11 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	 */
 	public void calculateEntityReferenceDisambiguatedConfidence(int max, int min) {
 		if ((max - min) > 0) {
-			double normalizedCorrelationScore = (correlationScore - min)
+			double normalizedCorrelationScore = (table.getCorrelationScore(row) - min)
 					/ (max - min);
-			this.entityReferenceDisambiguatedConfidence = (normalizedCorrelationScore * uriCorrelationDisambiguationWeight);
+			table.setEntityReferenceDisambiguatedConfidence(row,
+					normalizedCorrelationScore
+							* uriCorrelationDisambiguationWeight);
 		}
 	}
 
@@ -181,7 +199,7 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	 *         present.
 	 */
 	public UriRef getUriLink() {
-		return uriLink;
+		return table.getUriLink(row);
 	}
 
 	/**
@@ -197,7 +215,7 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	 *            the uri of the cloned fise:EntityAnnotation
 	 */
 	public void setEntityAnnotation(UriRef uri) {
-		this.uriLink = uri;
+		table.setUriLink(row, uri);
 	}
 
 	/**
@@ -206,7 +224,7 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	 * @return the URI
 	 */
 	public UriRef getEntityUri() {
-		return entityUri;
+		return table.getEntityUri(row);
 	}
 
 	/**
@@ -216,7 +234,7 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	 * @return
 	 */
 	public Double getOriginalConfidnece() {
-		return originalConfidence;
+		return table.getOriginalConfidence(row);
 	}
 
 	/**
@@ -228,7 +246,18 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	 * @return the {@link Entity} or <code>null</code> if not available
 	 */
 	public Entity getEntity() {
-		return entity;
+		return table.getEntity(row);
+	}
+
+	/**
+	 * Setter for the {@link Entity} dereferenced during the disambiguation
+	 * process
+	 *
+	 * @param entity
+	 *            the dereferenced {@link Entity}
+	 */
+	public void setEntity(Entity entity) {
+		table.setEntity(row, entity);
 	}
 
 	/**
@@ -239,7 +268,7 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	 *         disambiguated
 	 */
 	public Double getDisambiguatedConfidence() {
-		return disambiguatedConfidence;
+		return table.getDisambiguatedConfidence(row);
 	}
 
 	/**
@@ -248,27 +277,27 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	 * @return the name of the Entityhub {@link Site}
 	 */
 	public String getSite() {
-		return site;
+		return table.getSite(row);
 	}
 
 	public void setEntityType(String entityType) {
-		this.entityType = entityType;
+		table.setEntityType(row, entityType);
 	}
 
 	public String getEntityType() {
-		return entityType;
+		return table.getEntityType(row);
 	}
 
 	public void setEntityLabel(String entityLabel) {
-		this.entityLabel = entityLabel;
+		table.setEntityLabel(row, entityLabel);
 	}
 
 	public String getEntityLabel() {
-		return entityLabel;
+		return table.getEntityLabel(row);
 	}
 
 	public void setCorrelationScore(int correlationScore) {
-		this.correlationScore = correlationScore;
+		table.setCorrelationScore(row, correlationScore);
 	}
 
 	/**
@@ -277,89 +306,89 @@ public class EntityAnnotation implements Comparable<EntityAnnotation> {
 	 * @param disambiguatedConfidence
 	 */
 	public void setDisambiguatedConfidence(Double disambiguatedConfidence) {
-		this.disambiguatedConfidence = disambiguatedConfidence;
+		table.setDisambiguatedConfidence(row, toPrimitive(disambiguatedConfidence));
 	}
 
 	public void increaseCorrelationScore(int corefEntities) {
-		this.correlationScore += corefEntities;
+		table.increaseCorrelationScore(row, corefEntities);
 	}
 
 	public int getCorrelationScore() {
-		return correlationScore;
+		return table.getCorrelationScore(row);
 	}
 
 	public void setReferencesFromEntity(int linksFromEntity) {
-		this.referencesFromEntity = linksFromEntity;
+		table.setReferencesFromEntity(row, linksFromEntity);
 	}
 
 	public int getReferencesFromEntity() {
-		return referencesFromEntity;
+		return table.getReferencesFromEntity(row);
 	}
 
 	public void setFoafNameDisambiguationScore(
 			Double foafNameDisambiguationScore) {
-		this.foafNameDisambiguationScore = foafNameDisambiguationScore;
+		table.setFoafNameDisambiguationScore(row,
+				toPrimitive(foafNameDisambiguationScore));
 	}
 
 	public Double getFoafNameDisambiguationScore() {
-		return foafNameDisambiguationScore;
+		return table.getFoafNameDisambiguationScore(row);
 	}
 
 	public void setEntityReferenceDisambiguatedConfidence(
 			Double entityReferenceDisambiguatedConfidence) {
-		this.entityReferenceDisambiguatedConfidence = entityReferenceDisambiguatedConfidence;
+		table.setEntityReferenceDisambiguatedConfidence(row,
+				toPrimitive(entityReferenceDisambiguatedConfidence));
 	}
 
 	public Double getEntityReferenceDisambiguatedConfidence() {
-		return entityReferenceDisambiguatedConfidence;
+		return table.getEntityReferenceDisambiguatedConfidence(row);
 	}
 
 	public void setFoafNameDisambiguatedConfidence(
 			Double foafNameDisambiguatedConfidence) {
-		this.foafNameDisambiguatedConfidence = foafNameDisambiguatedConfidence;
+		table.setFoafNameDisambiguatedConfidence(row,
+				toPrimitive(foafNameDisambiguatedConfidence));
 	}
 
 	public Double getFoafNameDisambiguatedConfidence() {
-		return foafNameDisambiguatedConfidence;
+		return table.getFoafNameDisambiguatedConfidence(row);
 	}
 
 	@Override
 	public int hashCode() {
-		return entityUri.hashCode();
+		return getEntityUri().hashCode();
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		return obj instanceof EntityAnnotation
-				&& ((EntityAnnotation) obj).entityUri.equals(entityUri);
+				&& ((EntityAnnotation) obj).getEntityUri().equals(getEntityUri());
 	}
 
 	/**
-	 * Compares based on the {@link #getDisambiguatedConfidence()} (if present)
-	 * and falls back to the {@link #getOriginalConfidnece()}. If the original
-	 * confidence value is not present or both Suggestions do have the same
-	 * confidence the natural order of the Entities URI is used. This also
-	 * ensures <code>(x.compareTo(y)==0) == (x.equals(y))</code> and allows to
-	 * use this class with {@link SortedMap} and {@link SortedSet}
-	 * implementations.
+	 * Compares based on the {@link #getDisambiguatedConfidence()}. If both
+	 * Suggestions do have the same confidence the natural order of the
+	 * Entities URI is used. This also ensures
+	 * <code>(x.compareTo(y)==0) == (x.equals(y))</code> and allows to use this
+	 * class with {@link SortedMap} and {@link SortedSet} implementations.
 	 * <p>
 	 */
 	@Override
 	public int compareTo(EntityAnnotation other) {
-		int result;
-		if (disambiguatedConfidence != null
-				&& other.disambiguatedConfidence != null) {
-			result = other.disambiguatedConfidence
-					.compareTo(disambiguatedConfidence);
-		} else if (other.originalConfidence != null
-				&& originalConfidence != null) {
-			result = other.originalConfidence.compareTo(originalConfidence);
-		} else {
-			result = 0;
-		}
+		int result = Double.compare(other.table
+				.getDisambiguatedConfidence(other.row), table
+				.getDisambiguatedConfidence(row));
 		// ensure (x.compareTo(y)==0) == (x.equals(y))
-		return result == 0 ? entityUri.getUnicodeString().compareTo(
-				other.entityUri.getUnicodeString()) : result;
+		return result == 0 ? getEntityUri().getUnicodeString().compareTo(
+				other.getEntityUri().getUnicodeString()) : result;
+	}
+
+	/**
+	 * <code>null</code> values are stored as <code>0</code>
+	 */
+	private static double toPrimitive(Double value) {
+		return value == null ? 0.0 : value.doubleValue();
 	}
 
 }
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.stanbol.entityhub.servicesapi.model.Entity;
+
+/**
+ * A thread-safe, size bounded LRU cache for {@link Entity entities}
+ * dereferenced from the Entityhub. Used to avoid fetching frequently suggested
+ * entities for every processed content item. Cached entities expire after the
+ * configured time to live, so that changes in the Entityhub are eventually
+ * picked up.
+ */
+public class EntityCache {
+
+	private final Map<String, CachedEntity> entities;
+	private final long timeToLive;
+
+	/**
+	 * Creates a cache holding at most the parsed number of entities
+	 *
+	 * @param maxSize
+	 *            the maximum number of cached entities
+	 * @param timeToLive
+	 *            the time in milliseconds entities are cached.
+	 *            <code>0</code> or a negative value to never expire entities
+	 */
+	public EntityCache(final int maxSize, long timeToLive) {
+		this.timeToLive = timeToLive;
+		this.entities = new LinkedHashMap<String, CachedEntity>(16, 0.75f,
+				true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, CachedEntity> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Getter for a cached entity
+	 *
+	 * @param entityUri
+	 *            the URI of the entity
+	 * @return the cached {@link Entity} or <code>null</code> if not cached or
+	 *         expired
+	 */
+	public synchronized Entity get(String entityUri) {
+		CachedEntity cached = getCached(entityUri);
+		return cached == null ? null : cached.entity;
+	}
+
+	/**
+	 * Adds an entity to the cache
+	 *
+	 * @param entity
+	 *            the entity to cache
+	 */
+	public synchronized void put(Entity entity) {
+		entities.put(entity.getId(), new CachedEntity(entity,
+				currentTimeMillis()));
+	}
+
+	public synchronized boolean contains(String entityUri) {
+		return getCached(entityUri) != null;
+	}
+
+	/**
+	 * @return the number of cached entities including expired ones not yet
+	 *         removed
+	 */
+	public synchronized int size() {
+		return entities.size();
+	}
+
+	public synchronized void clear() {
+		entities.clear();
+	}
+
+	/**
+	 * Removes the entity if it is expired
+	 */
+	private CachedEntity getCached(String entityUri) {
+		CachedEntity cached = entities.get(entityUri);
+		if (cached != null && timeToLive > 0
+				&& currentTimeMillis() - cached.created >= timeToLive) {
+			entities.remove(entityUri);
+			return null;
+		}
+		return cached;
+	}
+
+	/**
+	 * The current time used for the expiry of entities
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	private static class CachedEntity {
+
+		private final Entity entity;
+		private final long created;
+
+		private CachedEntity(Entity entity, long created) {
+			this.entity = entity;
+			this.created = created;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.stanbol.enhancer.engine.disambiguation.foaf.EntityAccessLog.EntityAccess;
+import org.apache.stanbol.entityhub.servicesapi.model.Entity;
+import org.apache.stanbol.entityhub.servicesapi.site.Site;
+import org.apache.stanbol.entityhub.servicesapi.site.SiteException;
+import org.apache.stanbol.entityhub.servicesapi.site.SiteManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Preloads the most frequently suggested entities of the
+ * {@link EntityAccessLog} into the {@link EntityCache}. Intended to be
+ * executed asynchronously after the activation of the engine. Each entity is
+ * dereferenced by a separate fetch thread and waited for at most the remaining
+ * time budget, so the warm-up stops as soon as the configured time budget is
+ * used up (even if a request to the entityhub hangs) or the executing thread
+ * is interrupted.
+ * <p>
+ * The progress of the warm-up is available through the getters of this
+ * class.
+ * </p>
+ */
+public class EntityWarmup implements Runnable {
+
+	private static final Logger log = LoggerFactory
+			.getLogger(EntityWarmup.class);
+
+	/**
+	 * The states of the warm-up
+	 */
+	public static enum State {
+		PENDING, RUNNING, COMPLETED, BUDGET_EXCEEDED, INTERRUPTED
+	}
+
+	private final SiteManager siteManager;
+	private final EntityCache entityCache;
+	private final List<EntityAccess> entities;
+	private final long budgetMillis;
+
+	private volatile State state = State.PENDING;
+	private final AtomicInteger loaded = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private volatile long startTime;
+	private volatile long endTime;
+
+	/**
+	 * @param siteManager
+	 *            the {@link SiteManager} used to dereference the entities
+	 * @param entityCache
+	 *            the cache to preload
+	 * @param entities
+	 *            the entities to preload in the order of loading
+	 * @param budgetMillis
+	 *            the maximum time in milliseconds used for the warm-up
+	 */
+	public EntityWarmup(SiteManager siteManager, EntityCache entityCache,
+			List<EntityAccess> entities, long budgetMillis) {
+		this.siteManager = siteManager;
+		this.entityCache = entityCache;
+		this.entities = entities;
+		this.budgetMillis = budgetMillis;
+	}
+
+	@Override
+	public void run() {
+		startTime = System.currentTimeMillis();
+		long deadline = startTime + budgetMillis;
+		state = State.RUNNING;
+		log.info("start preloading {} entities (budget: {}ms)",
+				entities.size(), budgetMillis);
+		// entities are dereferenced by a separate thread so that a request
+		// hanging in the entityhub can not block the warm-up past its budget
+		ExecutorService fetchExecutor = Executors
+				.newSingleThreadExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, Thread.currentThread()
+								.getName() + "-fetch");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try {
+			for (EntityAccess access : entities) {
+				if (Thread.currentThread().isInterrupted()) {
+					state = State.INTERRUPTED;
+					return;
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					state = State.BUDGET_EXCEEDED;
+					return;
+				}
+				if (entityCache.contains(access.getEntityUri())) {
+					loaded.incrementAndGet();
+					continue;
+				}
+				Future<Entity> fetch = fetchExecutor.submit(createFetch(access));
+				try {
+					Entity entity = fetch.get(remaining, TimeUnit.MILLISECONDS);
+					if (entity != null) {
+						entityCache.put(entity);
+						loaded.incrementAndGet();
+					} else {
+						failed.incrementAndGet();
+					}
+				} catch (TimeoutException e) {
+					fetch.cancel(true);
+					failed.incrementAndGet();
+					state = State.BUDGET_EXCEEDED;
+					return;
+				} catch (ExecutionException e) {
+					log.debug("unable to preload entity " + access.getEntityUri(),
+							e.getCause());
+					failed.incrementAndGet();
+				} catch (InterruptedException e) {
+					fetch.cancel(true);
+					state = State.INTERRUPTED;
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			state = State.COMPLETED;
+		} finally {
+			// a fetch blocked in a socket read may ignore the interrupt. Its
+			// daemon thread is abandoned and ends with the read
+			fetchExecutor.shutdownNow();
+			endTime = System.currentTimeMillis();
+			log.info("entity warm-up {}: {} loaded, {} failed of {} in {}ms",
+					new Object[] { state, loaded.get(), failed.get(),
+							entities.size(), endTime - startTime });
+		}
+	}
+
+	private Callable<Entity> createFetch(final EntityAccess access) {
+		return new Callable<Entity>() {
+			@Override
+			public Entity call() throws SiteException {
+				Site site = siteManager.getSite(access.getSite());
+				return site == null ? null : site.getEntity(access
+						.getEntityUri());
+			}
+		};
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the number of entities the warm-up will try to load
+	 */
+	public int getPlanned() {
+		return entities.size();
+	}
+
+	/**
+	 * @return the number of entities loaded into the cache
+	 */
+	public int getLoaded() {
+		return loaded.get();
+	}
+
+	/**
+	 * @return the number of entities that could not be loaded
+	 */
+	public int getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * @return the time in milliseconds spent for the warm-up so far
+	 */
+	public long getElapsedMillis() {
+		if (startTime == 0) {
+			return 0;
+		}
+		return (endTime == 0 ? System.currentTimeMillis() : endTime)
+				- startTime;
+	}
+}
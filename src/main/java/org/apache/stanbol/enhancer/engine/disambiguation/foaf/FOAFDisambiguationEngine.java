@@ -1,6 +1,7 @@
 package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
 
 import static org.apache.stanbol.enhancer.servicesapi.rdf.Properties.*;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -13,6 +14,23 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.clerezza.rdf.core.Literal;
 import org.apache.clerezza.rdf.core.LiteralFactory;
@@ -41,6 +59,7 @@ import org.apache.stanbol.enhancer.servicesapi.rdf.TechnicalClasses;
 import org.apache.stanbol.entityhub.servicesapi.model.Entity;
 import org.apache.stanbol.entityhub.servicesapi.model.Representation;
 import org.apache.stanbol.entityhub.servicesapi.model.Text;
+import org.apache.stanbol.entityhub.servicesapi.site.Site;
 import org.apache.stanbol.entityhub.servicesapi.site.SiteException;
 import org.apache.stanbol.entityhub.servicesapi.site.SiteManager;
 import org.osgi.service.cm.ConfigurationException;
@@ -60,7 +79,19 @@ import org.slf4j.LoggerFactory;
  */
 @Component(immediate = true, metatype = true)
 @Service
-@Properties(value = { @Property(name = EnhancementEngine.PROPERTY_NAME, value = "disambiguation-foaf") })
+@Properties(value = {
+		@Property(name = EnhancementEngine.PROPERTY_NAME, value = "disambiguation-foaf"),
+		@Property(name = FOAFDisambiguationEngine.ENTITY_CACHE_SIZE, intValue = FOAFDisambiguationEngine.DEFAULT_ENTITY_CACHE_SIZE),
+		@Property(name = FOAFDisambiguationEngine.ENTITY_CACHE_TTL, intValue = FOAFDisambiguationEngine.DEFAULT_ENTITY_CACHE_TTL),
+		@Property(name = FOAFDisambiguationEngine.WARMUP_SIZE, intValue = FOAFDisambiguationEngine.DEFAULT_WARMUP_SIZE),
+		@Property(name = FOAFDisambiguationEngine.WARMUP_BUDGET, intValue = FOAFDisambiguationEngine.DEFAULT_WARMUP_BUDGET),
+		@Property(name = FOAFDisambiguationEngine.ACCESS_LOG_INTERVAL, intValue = FOAFDisambiguationEngine.DEFAULT_ACCESS_LOG_INTERVAL),
+		@Property(name = FOAFDisambiguationEngine.CONTENT_ITEM_TIME_BUDGET, intValue = FOAFDisambiguationEngine.DEFAULT_CONTENT_ITEM_TIME_BUDGET),
+		@Property(name = FOAFDisambiguationEngine.FETCH_THREADS, intValue = FOAFDisambiguationEngine.DEFAULT_FETCH_THREADS),
+		@Property(name = FOAFDisambiguationEngine.FETCH_QUEUE_SIZE, intValue = FOAFDisambiguationEngine.DEFAULT_FETCH_QUEUE_SIZE),
+		@Property(name = FOAFDisambiguationEngine.EXPLAIN, boolValue = FOAFDisambiguationEngine.DEFAULT_EXPLAIN),
+		@Property(name = FOAFDisambiguationEngine.EXPLAIN_TOP_N, intValue = FOAFDisambiguationEngine.DEFAULT_EXPLAIN_TOP_N),
+		@Property(name = FOAFDisambiguationEngine.EXPLAIN_MAX_TRIPLES, intValue = FOAFDisambiguationEngine.DEFAULT_EXPLAIN_MAX_TRIPLES) })
 public class FOAFDisambiguationEngine extends
 		AbstractEnhancementEngine<IOException, RuntimeException> implements
 		EnhancementEngine, ServiceProperties {
@@ -77,6 +108,81 @@ public class FOAFDisambiguationEngine extends
 	 */
 	public static final Integer defaultOrder = ServiceProperties.ORDERING_POST_PROCESSING - 90;
 
+	/**
+	 * The maximum number of entities kept in the {@link EntityCache}
+	 */
+	public static final String ENTITY_CACHE_SIZE = "disambiguation.foaf.cache.size";
+	public static final int DEFAULT_ENTITY_CACHE_SIZE = 10000;
+	/**
+	 * The time in seconds entities are kept in the {@link EntityCache}.
+	 * <code>0</code> keeps entities until evicted by the LRU policy.
+	 */
+	public static final String ENTITY_CACHE_TTL = "disambiguation.foaf.cache.ttl";
+	public static final int DEFAULT_ENTITY_CACHE_TTL = 3600;
+	/**
+	 * The number of most frequently suggested entities preloaded into the
+	 * {@link EntityCache} on activation. <code>0</code> deactivates the
+	 * warm-up.
+	 */
+	public static final String WARMUP_SIZE = "disambiguation.foaf.warmup.size";
+	public static final int DEFAULT_WARMUP_SIZE = 1000;
+	/**
+	 * The maximum time in milliseconds spent for the warm-up
+	 */
+	public static final String WARMUP_BUDGET = "disambiguation.foaf.warmup.budget";
+	public static final int DEFAULT_WARMUP_BUDGET = 60000;
+	/**
+	 * The interval in seconds the {@link EntityAccessLog} is persisted
+	 */
+	public static final String ACCESS_LOG_INTERVAL = "disambiguation.foaf.accesslog.interval";
+	public static final int DEFAULT_ACCESS_LOG_INTERVAL = 300;
+	/**
+	 * The maximum time in milliseconds spent for dereferencing the entities
+	 * suggested for a content item. Entities not fetched within this time keep
+	 * their original confidence. <code>0</code> deactivates the time budget.
+	 */
+	public static final String CONTENT_ITEM_TIME_BUDGET = "disambiguation.foaf.timebudget";
+	public static final int DEFAULT_CONTENT_ITEM_TIME_BUDGET = 10000;
+	/**
+	 * The number of threads used to dereference entities from the entityhub
+	 */
+	public static final String FETCH_THREADS = "disambiguation.foaf.fetch.threads";
+	public static final int DEFAULT_FETCH_THREADS = 8;
+	/**
+	 * The maximum number of entities waiting to be dereferenced. Entities that
+	 * can not be queued keep their original confidence.
+	 */
+	public static final String FETCH_QUEUE_SIZE = "disambiguation.foaf.fetch.queue";
+	public static final int DEFAULT_FETCH_QUEUE_SIZE = 1000;
+	/**
+	 * If enabled the correlated entities, shared references, the foaf:name
+	 * score and the component confidences of the entity annotations are
+	 * written to the metadata (see {@link DisambiguationExplanation})
+	 */
+	public static final String EXPLAIN = "disambiguation.foaf.explain";
+	public static final boolean DEFAULT_EXPLAIN = false;
+	/**
+	 * The maximum number of correlated entities and shared references written
+	 * per entity annotation in explain mode
+	 */
+	public static final String EXPLAIN_TOP_N = "disambiguation.foaf.explain.topn";
+	public static final int DEFAULT_EXPLAIN_TOP_N = 5;
+	/**
+	 * The maximum number of triples added per content item in explain mode
+	 */
+	public static final String EXPLAIN_MAX_TRIPLES = "disambiguation.foaf.explain.maxtriples";
+	public static final int DEFAULT_EXPLAIN_MAX_TRIPLES = 1000;
+	/**
+	 * The name of the {@link EntityAccessLog} file in the data area of the
+	 * bundle
+	 */
+	private static final String ACCESS_LOG_FILE = "entity-access.log";
+	/**
+	 * The number of references per entity the {@link ReferenceCountingFilter}
+	 * of the first content item is sized for
+	 */
+	private static final int DEFAULT_REFERENCES_PER_ENTITY = 64;
+
 	/**
 	 * The {@link LiteralFactory} used to create typed RDF literals
 	 */
@@ -88,15 +194,50 @@ public class FOAFDisambiguationEngine extends
 	@Reference
 	protected NamespacePrefixService namespacePrefixService;
 
-	// all the URIReferences of entities and the entities which are linked to
-	// those URIreferences
-	// key: URIReference value: Set<EntityAnnotation>
-	private Map<String, Set<UriRef>> urisReferencedByEntities = new HashMap<String, Set<UriRef>>();
-	// all entity annotations suggested for the content
-	private Map<UriRef, EntityAnnotation> allEnitityAnnotations = new HashMap<UriRef, EntityAnnotation>();
-	//correlation scores extracted from URIReference correlations of the suggested entities
-	private SortedSet<Integer> correlationScoresOfEntities = new TreeSet<Integer>();
-	private String FOAF_NAMESPACE;
+	/**
+	 * Set to <code>null</code> on deactivation while fetches may still be
+	 * running
+	 */
+	private volatile EntityCache entityCache;
+	private EntityAccessLog entityAccessLog;
+	private File entityAccessLogFile;
+	private int entityCacheSize;
+	private EntityWarmup entityWarmup;
+	/**
+	 * Used to periodically persist the {@link EntityAccessLog}
+	 */
+	private ScheduledExecutorService executor;
+	/**
+	 * Used to run the warm-up, so that it does not delay writing the
+	 * {@link EntityAccessLog}
+	 */
+	private ExecutorService warmupExecutor;
+	/**
+	 * Used to dereference the suggested entities within the time budget of a
+	 * content item. Bounded in threads and queued fetches.
+	 */
+	private ExecutorService fetchExecutor;
+	/**
+	 * The running and queued fetches by entity URI. Shared by all content
+	 * items, so that an entity is not requested again while a previous
+	 * request (e.g. one exceeding the time budget) is still running.
+	 */
+	private final ConcurrentMap<String, Future<Entity>> fetches = new ConcurrentHashMap<String, Future<Entity>>();
+	private int contentItemTimeBudget;
+	private boolean explain;
+	private int explainTopN;
+	private int explainMaxTriples;
+	/**
+	 * The number of content items processed with partial results because the
+	 * time budget was exceeded or the fetch queue was full
+	 */
+	private final AtomicLong degradedContentItems = new AtomicLong();
+	/**
+	 * The average number of references of the entities of the last processed
+	 * content item. Used to size the {@link ReferenceCountingFilter} of the
+	 * next one, the filter grows if this is too small.
+	 */
+	private volatile int referencesPerEntity = DEFAULT_REFERENCES_PER_ENTITY;
 
 	@Override
 	public Map<String, Object> getServiceProperties() {
@@ -124,8 +265,19 @@ public class FOAFDisambiguationEngine extends
 
 	@Override
 	public void computeEnhancements(ContentItem ci) throws EngineException {
+		long deadline = contentItemTimeBudget > 0 ? System.currentTimeMillis()
+				+ contentItemTimeBudget : Long.MAX_VALUE;
 		MGraph graph = ci.getMetadata();
-		FOAF_NAMESPACE = namespacePrefixService.getNamespace("foaf");
+		// the state of this call, not shared with other content items
+		DisambiguationContext context = new DisambiguationContext(
+				namespacePrefixService.getNamespace("foaf"));
+		// the dereferenced entity annotations suggested for the content
+		Map<UriRef, EntityAnnotation> allEntityAnnotations = context
+				.getAllEntityAnnotations();
+		List<EntityAnnotation> suggestions = new ArrayList<EntityAnnotation>();
+		// the fise:selected-text triples of the text annotation of the
+		// suggestion with the same index
+		List<List<Triple>> selectedTexts = new ArrayList<List<Triple>>();
 		Iterator<Triple> it = graph.filter(null, RDF_TYPE,
 				TechnicalClasses.ENHANCER_TEXTANNOTATION);
 		while (it.hasNext()) {
@@ -135,60 +287,252 @@ public class FOAFDisambiguationEngine extends
 			Iterator<Triple> relatedLinks = graph.filter(null, DC_RELATION,
 					textAnnotation);
 			// extracting selected text for foaf-name comparison
+			List<Triple> selectedTextTriples = new ArrayList<Triple>();
 			Iterator<Triple> selectedTextsItr = graph.filter(textAnnotation,
 					ENHANCER_SELECTED_TEXT, null);
+			while (selectedTextsItr.hasNext()) {
+				selectedTextTriples.add(selectedTextsItr.next());
+			}
 			while (relatedLinks.hasNext()) {
 				UriRef link = (UriRef) relatedLinks.next().getSubject();
 				EntityAnnotation suggestion = EntityAnnotation.createFromUri(
-						graph, link);
+						context.getSuggestionTable(), graph, link);
 				// if returned suggestion is an entity-annotation proceed with
 				// disambiguation process
 				if (suggestion != null) {
-					// process entityAnnotation for disambiguation
-					try {
-						// process co-referenced entity-references
-						processEntityReferences(suggestion);
-						// matching with foaf:name
-						processFOAFNameDisambiguation(suggestion,
-								selectedTextsItr);
-						// adding new entity annotation to the global map
-						allEnitityAnnotations.put(suggestion.getEntityUri(),
-								suggestion);
-					} catch (SiteException e) {
-						log.error("Error occured while processing entity-annotations : \n"
-								+ e.getMessage());
-						e.printStackTrace();
-					}
+					suggestions.add(suggestion);
+					selectedTexts.add(selectedTextTriples);
+				}
+			}
+		}
+		// dereference the entities within the time budget of the content item
+		if (!fetchEntities(suggestions, deadline)) {
+			degradedContentItems.incrementAndGet();
+			log.warn("Time budget of {}ms exceeded or fetch queue full for "
+					+ "content item {}. Entities not dereferenced keep their "
+					+ "original confidence", contentItemTimeBudget, ci.getUri());
+		}
+		for (int i = 0; i < suggestions.size(); i++) {
+			EntityAnnotation suggestion = suggestions.get(i);
+			// entities without data keep their original confidence
+			if (suggestion.getEntity() != null) {
+				// process entityAnnotation for disambiguation
+				try {
+					// matching with foaf:name. Every suggestion is compared
+					// with all selected texts of its text annotation
+					processFOAFNameDisambiguation(suggestion, selectedTexts
+							.get(i).iterator(), context);
+					// adding new entity annotation to the map of the content item
+					allEntityAnnotations.put(suggestion.getEntityUri(),
+							suggestion);
+				} catch (SiteException e) {
+					log.error("Error occured while processing entity-annotations : \n"
+							+ e.getMessage());
+					e.printStackTrace();
 				}
 			}
 		}
+		// process co-referenced entity-references in two passes. The first pass
+		// counts the references and adds them to the filter, the second one
+		// only materializes the references seen at least twice
+		ReferenceCountingFilter referenceFilter = createReferenceFilter(
+				allEntityAnnotations.size() * referencesPerEntity);
+		int allReferences = 0;
+		for (EntityAnnotation suggestion : allEntityAnnotations.values()) {
+			addEntityReferences(suggestion, referenceFilter);
+			allReferences += suggestion.getReferencesFromEntity();
+		}
+		if (!allEntityAnnotations.isEmpty()) {
+			referencesPerEntity = Math.max((allReferences
+					+ allEntityAnnotations.size() - 1)
+					/ allEntityAnnotations.size(), 1);
+		}
+		for (EntityAnnotation suggestion : allEntityAnnotations.values()) {
+			processEntityReferences(suggestion, referenceFilter, context);
+		}
 		// calculate correlation scores for entities and disambiguate
-		caculateURICorrelationScoreForEntities();
-		disambiguateEntityReferences();
+		caculateURICorrelationScoreForEntities(context);
+		disambiguateEntityReferences(context);
+		calculateDisambiguatedConfidences(context);
+		List<Triple> explanation = explain ? explainDisambiguationResults(ci,
+				context) : null;
 		// writing back to graph
 		ci.getLock().writeLock().lock();
 		try {
-			applyDisambiguationResults(graph);
+			writeDisambiguationResults(graph, context);
+			if (explanation != null) {
+				graph.addAll(explanation);
+			}
 		} finally {
 			ci.getLock().writeLock().unlock();
 		}
-		clearEhancementData();
 	}
 
-	public void clearEhancementData() {
-		urisReferencedByEntities.clear();
-		allEnitityAnnotations.clear();
+	/**
+	 * The number of content items processed with partial results because the
+	 * configured time budget was exceeded or the fetch queue was full
+	 * 
+	 * @return the number of degraded content items
+	 */
+	public long getDegradedContentItemCount() {
+		return degradedContentItems.get();
 	}
 
 	public Entity getEntityFromEntityHub(EntityAnnotation sug)
 			throws SiteException {
+		if (sug.getEntity() != null) {
+			return sug.getEntity();
+		}
 		UriRef entityUri = sug.getEntityUri();
 		String entityhubSite = sug.getSite();
 		Entity entity = null;
 		// dereferencing the entity from the entityhub
 		if (entityhubSite != null && entityUri != null) {
-			entity = siteManager.getSite(entityhubSite).getEntity(
-					entityUri.getUnicodeString());
+			entityAccessLog.record(entityhubSite, entityUri.getUnicodeString());
+			entity = entityCache.get(entityUri.getUnicodeString());
+			if (entity == null) {
+				entity = fetchEntity(entityhubSite, entityUri.getUnicodeString());
+			}
+		}
+		return entity;
+	}
+
+	/**
+	 * <p>
+	 * Sets the {@link Entity} of all parsed suggestions. Entities not present
+	 * in the {@link EntityCache} are dereferenced in parallel from the
+	 * entityhub. Entities already requested for another content item are not
+	 * requested again. Dereferencing not completed until the parsed deadline
+	 * is not waited for and the {@link Entity} of those suggestions remains
+	 * <code>null</code>. Such fetches continue in the background and add the
+	 * entity to the {@link EntityCache} when completed.
+	 * </p>
+	 * 
+	 * @param The
+	 *            suggested entities suggestions
+	 * @param The
+	 *            deadline in milliseconds (as returned by
+	 *            {@link System#currentTimeMillis()}) deadline
+	 * @return <code>false</code> if the deadline was exceeded or the fetch
+	 *         queue was full before all entities were dereferenced, otherwise
+	 *         <code>true</code>
+	 */
+	public boolean fetchEntities(List<EntityAnnotation> suggestions,
+			long deadline) {
+		boolean completed = true;
+		Map<String, Future<Entity>> contentItemFetches = new HashMap<String, Future<Entity>>();
+		for (EntityAnnotation suggestion : suggestions) {
+			UriRef entityUri = suggestion.getEntityUri();
+			String entityhubSite = suggestion.getSite();
+			if (suggestion.getEntity() != null || entityhubSite == null
+					|| entityUri == null) {
+				continue;
+			}
+			String uri = entityUri.getUnicodeString();
+			entityAccessLog.record(entityhubSite, uri);
+			Entity entity = entityCache.get(uri);
+			if (entity != null) {
+				suggestion.setEntity(entity);
+			} else if (!contentItemFetches.containsKey(uri)) {
+				Future<Entity> fetch = startFetch(entityhubSite, uri);
+				if (fetch == null) {
+					completed = false;
+				} else {
+					contentItemFetches.put(uri, fetch);
+				}
+			}
+		}
+		try {
+			for (EntityAnnotation suggestion : suggestions) {
+				if (suggestion.getEntity() != null
+						|| suggestion.getEntityUri() == null) {
+					continue;
+				}
+				Future<Entity> fetch = contentItemFetches.get(suggestion
+						.getEntityUri().getUnicodeString());
+				if (fetch == null) {
+					continue;
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0 && !fetch.isDone()) {
+					completed = false;
+					continue;
+				}
+				try {
+					suggestion.setEntity(fetch.get(Math.max(remaining, 0),
+							TimeUnit.MILLISECONDS));
+				} catch (TimeoutException e) {
+					completed = false;
+				} catch (CancellationException e) {
+					completed = false;
+				} catch (ExecutionException e) {
+					log.error("Error occured while dereferencing entity "
+							+ suggestion.getEntityUri(), e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			completed = false;
+		}
+		return completed;
+	}
+
+	/**
+	 * Starts dereferencing the parsed entity if it is not already being
+	 * dereferenced
+	 * 
+	 * @return the running or queued fetch or <code>null</code> if the fetch
+	 *         queue is full
+	 */
+	private Future<Entity> startFetch(final String entityhubSite,
+			final String entityUri) {
+		Future<Entity> running = fetches.get(entityUri);
+		if (running != null) {
+			return running;
+		}
+		FutureTask<Entity> fetch = new FutureTask<Entity>(
+				new Callable<Entity>() {
+					@Override
+					public Entity call() throws SiteException {
+						return fetchEntity(entityhubSite, entityUri);
+					}
+				}) {
+			@Override
+			protected void done() {
+				fetches.remove(entityUri, this);
+			}
+		};
+		running = fetches.putIfAbsent(entityUri, fetch);
+		if (running != null) {
+			return running;
+		}
+		try {
+			fetchExecutor.execute(fetch);
+		} catch (RejectedExecutionException e) {
+			fetches.remove(entityUri, fetch);
+			log.debug("fetch queue full, entity {} not dereferenced",
+					entityUri);
+			return null;
+		}
+		return fetch;
+	}
+
+	/**
+	 * Dereferences the entity from the parsed entityhub site and adds it to
+	 * the {@link EntityCache}. Fetches exceeding the time budget may complete
+	 * after the engine was deactivated, the entity is not cached in this case.
+	 */
+	private Entity fetchEntity(String entityhubSite, String entityUri)
+			throws SiteException {
+		Site site = siteManager.getSite(entityhubSite);
+		if (site == null) {
+			log.warn("Entityhub site {} is not available", entityhubSite);
+			return null;
+		}
+		Entity entity = site.getEntity(entityUri);
+		EntityCache cache = entityCache;
+		if (entity != null && cache != null) {
+			cache.put(entity);
 		}
 		return entity;
 	}
@@ -203,13 +547,16 @@ public class FOAFDisambiguationEngine extends
 	 *            ea
 	 * @param The
 	 *            fise:selected-text tokens of the content selectedTextsTriples
+	 * @param The
+	 *            state of the processed content item context
 	 * @throws SiteException
 	 */
 	public void processFOAFNameDisambiguation(EntityAnnotation ea,
-			Iterator<Triple> selectedTextsTriples) throws SiteException {
+			Iterator<Triple> selectedTextsTriples, DisambiguationContext context)
+			throws SiteException {
 		Entity entity = this.getEntityFromEntityHub(ea);
 		Representation entityRep = entity.getRepresentation();
-		String foafNameURI = this.FOAF_NAMESPACE + "name";
+		String foafNameURI = context.getFoafNamespace() + "name";
 		//when comparing selected text with foaf:name, all whitespaces and non-word chars are removed
 		String regexPattern = "[\\s\\W]";
 		Text foafNameText = ((Text) entityRep.getFirst(foafNameURI));
@@ -238,43 +585,105 @@ public class FOAFDisambiguationEngine extends
 
 	/**
 	 * <p>
-	 * Processes all the URIReference type fields of entities and add them to
-	 * the global map as keys and entities as values
+	 * First pass over the URIReference type fields of the entity. Adds all the
+	 * references to the filter and sets the number of references from the
+	 * entity.
 	 * </p>
 	 * 
 	 * @param The
 	 *            EntityAnnotation to process entityAnnotation
-	 * @throws SiteException
+	 * @param The
+	 *            filter counting the references of all entities referenceFilter
 	 */
-	public void processEntityReferences(EntityAnnotation entityAnnotation)
-			throws SiteException {
-		Entity entity = this.getEntityFromEntityHub(entityAnnotation);
-		Representation entityRep = entity.getRepresentation();
+	public void addEntityReferences(EntityAnnotation entityAnnotation,
+			ReferenceCountingFilter referenceFilter) {
+		Representation entityRep = entityAnnotation.getEntity()
+				.getRepresentation();
 		Iterator<String> fields = entityRep.getFieldNames();
 		int linksFromEntity = 0;
+		while (fields.hasNext()) {
+			Iterator<org.apache.stanbol.entityhub.servicesapi.model.Reference> urisReferenced = entityRep
+					.getReferences(fields.next());
+			while (urisReferenced.hasNext()) {
+				referenceFilter.add(urisReferenced.next().getReference());
+				linksFromEntity++;
+			}
+		}
+		entityAnnotation.setReferencesFromEntity(linksFromEntity);
+	}
+
+	/**
+	 * Creates the filter used to skip references that can not correlate. The
+	 * filter grows if more references are added.
+	 * 
+	 * @param The
+	 *            expected number of references of all entities
+	 *            expectedReferences
+	 * @return the filter
+	 */
+	protected ReferenceCountingFilter createReferenceFilter(
+			int expectedReferences) {
+		return new ReferenceCountingFilter(expectedReferences);
+	}
+
+	/**
+	 * @return the number of URI references materialized for the content item
+	 *         of the parsed context
+	 */
+	int getReferencePostingCount(DisambiguationContext context) {
+		return context.getUrisReferencedByEntities().size();
+	}
+
+	/**
+	 * <p>
+	 * Processes all the URIReference type fields of entities and add them to
+	 * the global map as keys and entities as values. References the filter has
+	 * not seen at least twice can not correlate with other entities, so they
+	 * are only added to the correlation score of the entity.
+	 * </p>
+	 * 
+	 * @param The
+	 *            EntityAnnotation to process entityAnnotation
+	 * @param The
+	 *            filter populated by
+	 *            {@link #addEntityReferences(EntityAnnotation, ReferenceCountingFilter)}
+	 *            referenceFilter
+	 * @param The
+	 *            state of the processed content item context
+	 */
+	public void processEntityReferences(EntityAnnotation entityAnnotation,
+			ReferenceCountingFilter referenceFilter,
+			DisambiguationContext context) {
+		Map<String, Set<UriRef>> urisReferencedByEntities = context
+				.getUrisReferencedByEntities();
+		Representation entityRep = entityAnnotation.getEntity()
+				.getRepresentation();
+		Iterator<String> fields = entityRep.getFieldNames();
+		int uncorrelatedReferences = 0;
 		while (fields.hasNext()) {
 			String field = fields.next();
 			Iterator<org.apache.stanbol.entityhub.servicesapi.model.Reference> urisReferenced = entityRep
 					.getReferences(field);
 			while (urisReferenced.hasNext()) {
-				org.apache.stanbol.entityhub.servicesapi.model.Reference uriReference = urisReferenced
-						.next();
-				linksFromEntity++;
-				String referenceString = uriReference.getReference();
-				if (urisReferencedByEntities.containsKey(referenceString)) {
-					Set<UriRef> eas = urisReferencedByEntities
-							.get(referenceString);
-					eas.add(entityAnnotation.getEntityUri());
-					urisReferencedByEntities.put(referenceString, eas);
-				} else {
-					Set<UriRef> eas = new HashSet<UriRef>();
-					eas.add(entityAnnotation.getEntityUri());
+				String referenceString = urisReferenced.next().getReference();
+				if (!referenceFilter.seenAtLeastTwice(referenceString)) {
+					// same score as a link referenced by this entity only
+					uncorrelatedReferences++;
+					continue;
+				}
+				Set<UriRef> eas = urisReferencedByEntities.get(referenceString);
+				if (eas == null) {
+					eas = new HashSet<UriRef>();
 					// key:link, value:entityAnnotation set referencing link
 					urisReferencedByEntities.put(referenceString, eas);
 				}
+				eas.add(entityAnnotation.getEntityUri());
 			}
 		}
-		entityAnnotation.setReferencesFromEntity(linksFromEntity);
+		if (uncorrelatedReferences > 0) {
+			entityAnnotation.increaseCorrelationScore(uncorrelatedReferences);
+			context.getCorrelationScoresOfEntities().add(Integer.valueOf(1));
+		}
 	}
 
 	/**
@@ -282,28 +691,33 @@ public class FOAFDisambiguationEngine extends
 	 * Counts the number of correlated URI-References and add that score to
 	 * correlated entities
 	 * </p>
+	 * 
+	 * @param The
+	 *            state of the processed content item context
 	 */
-	public void caculateURICorrelationScoreForEntities() {
-		for (String uriReference : urisReferencedByEntities.keySet()) {
-			Set<UriRef> entityAnnotationsLinked = urisReferencedByEntities
-					.get(uriReference);
+	public void caculateURICorrelationScoreForEntities(
+			DisambiguationContext context) {
+		Map<UriRef, EntityAnnotation> allEntityAnnotations = context
+				.getAllEntityAnnotations();
+		for (Set<UriRef> entityAnnotationsLinked : context
+				.getUrisReferencedByEntities().values()) {
 			int correlationScoreForURI = entityAnnotationsLinked.size();
 			// adding the correlationscore to the global set for normalization
 			// requirements
-			this.correlationScoresOfEntities.add(new Integer(
-					correlationScoreForURI));
+			context.getCorrelationScoresOfEntities().add(
+					new Integer(correlationScoreForURI));
 			for (UriRef ea : entityAnnotationsLinked) {
-				if (allEnitityAnnotations.get(ea) != null) {
-					allEnitityAnnotations.get(ea).increaseCorrelationScore(
+				if (allEntityAnnotations.get(ea) != null) {
+					allEntityAnnotations.get(ea).increaseCorrelationScore(
 							correlationScoreForURI);
 				}
 			}
 		}
 	}
 
-	public void disambiguateEntityReferences() {
-		int allUriRefs = urisReferencedByEntities.keySet().size();
-		for (EntityAnnotation ea : allEnitityAnnotations.values()) {
+	public void disambiguateEntityReferences(DisambiguationContext context) {
+		int allUriRefs = context.getUrisReferencedByEntities().size();
+		for (EntityAnnotation ea : context.getAllEntityAnnotations().values()) {
 			this.performEntityReferenceDisambiguation(ea, allUriRefs);
 		}
 	}
@@ -317,15 +731,86 @@ public class FOAFDisambiguationEngine extends
 		ea.setCorrelationScore(correlationsWithOtherEntities);
 	}
 
-	public void applyDisambiguationResults(MGraph graph) {
-		int max = this.correlationScoresOfEntities.last();
-		int min = this.correlationScoresOfEntities.first();
-	
-		for (EntityAnnotation ea : allEnitityAnnotations.values()) {
+	public void calculateDisambiguatedConfidences(DisambiguationContext context) {
+		SortedSet<Integer> correlationScoresOfEntities = context
+				.getCorrelationScoresOfEntities();
+		// no correlation scores if no entity could be dereferenced
+		int max = correlationScoresOfEntities.isEmpty() ? 0
+				: correlationScoresOfEntities.last();
+		int min = correlationScoresOfEntities.isEmpty() ? 0
+				: correlationScoresOfEntities.first();
+
+		for (EntityAnnotation ea : context.getAllEntityAnnotations().values()) {
 			// calculate total dc
 			ea.calculateFoafNameDisambiguatedConfidence();
 			ea.calculateEntityReferenceDisambiguatedConfidence(max, min);
 			ea.calculateDisambiguatedConfidence();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Collects the triples explaining the disambiguated confidences. Entity
+	 * annotations with higher confidences are explained first, so that the
+	 * most relevant ones are kept if the maximum number of triples is reached.
+	 * </p>
+	 * 
+	 * @param The
+	 *            processed content item ci
+	 * @param The
+	 *            state of the processed content item context
+	 * @return the buffered triples
+	 */
+	public List<Triple> explainDisambiguationResults(ContentItem ci,
+			DisambiguationContext context) {
+		DisambiguationExplanation explanation = new DisambiguationExplanation(
+				context.getUrisReferencedByEntities(), explainTopN,
+				explainMaxTriples, literalFactory);
+		for (EntityAnnotation ea : new TreeSet<EntityAnnotation>(context
+				.getAllEntityAnnotations().values())) {
+			if (!explanation.explain(ea)) {
+				break;
+			}
+		}
+		if (explanation.isTruncated()) {
+			log.debug("explanation of content item {} truncated to {} triples",
+					ci.getUri(), explainMaxTriples);
+		}
+		return explanation.getTriples();
+	}
+
+	/**
+	 * <p>
+	 * Calculates the disambiguated confidences and writes them to the parsed
+	 * graph
+	 * </p>
+	 * 
+	 * @param The
+	 *            metadata of the processed content item graph
+	 * @param The
+	 *            state of the processed content item context
+	 */
+	public void applyDisambiguationResults(MGraph graph,
+			DisambiguationContext context) {
+		calculateDisambiguatedConfidences(context);
+		writeDisambiguationResults(graph, context);
+	}
+
+	/**
+	 * <p>
+	 * Writes the disambiguated confidences calculated by
+	 * {@link #calculateDisambiguatedConfidences(DisambiguationContext)} to the
+	 * parsed graph
+	 * </p>
+	 * 
+	 * @param The
+	 *            metadata of the processed content item graph
+	 * @param The
+	 *            state of the processed content item context
+	 */
+	public void writeDisambiguationResults(MGraph graph,
+			DisambiguationContext context) {
+		for (EntityAnnotation ea : context.getAllEntityAnnotations().values()) {
 			EnhancementEngineHelper.set(graph, ea.getUriLink(),
 					ENHANCER_CONFIDENCE, ea.getDisambiguatedConfidence(),
 					literalFactory);
@@ -335,6 +820,15 @@ public class FOAFDisambiguationEngine extends
 		}
 	}
 
+	/**
+	 * The warm-up of the {@link EntityCache} started on activation
+	 * 
+	 * @return the warm-up or <code>null</code> if deactivated
+	 */
+	public EntityWarmup getEntityWarmup() {
+		return entityWarmup;
+	}
+
 	/**
 	 * Activate and read the properties
 	 * 
@@ -349,6 +843,91 @@ public class FOAFDisambiguationEngine extends
 		} catch (IOException e) {
 			log.error("Error in activation method.", e);
 		}
+		@SuppressWarnings("unchecked")
+		Dictionary<String, Object> properties = ce.getProperties();
+		entityCacheSize = getIntProperty(properties, ENTITY_CACHE_SIZE,
+				DEFAULT_ENTITY_CACHE_SIZE);
+		int warmupSize = getIntProperty(properties, WARMUP_SIZE,
+				DEFAULT_WARMUP_SIZE);
+		int warmupBudget = getIntProperty(properties, WARMUP_BUDGET,
+				DEFAULT_WARMUP_BUDGET);
+		int accessLogInterval = getIntProperty(properties,
+				ACCESS_LOG_INTERVAL, DEFAULT_ACCESS_LOG_INTERVAL);
+		contentItemTimeBudget = getIntProperty(properties,
+				CONTENT_ITEM_TIME_BUDGET, DEFAULT_CONTENT_ITEM_TIME_BUDGET);
+		int fetchThreads = Math.max(getIntProperty(properties, FETCH_THREADS,
+				DEFAULT_FETCH_THREADS), 1);
+		int fetchQueueSize = Math.max(getIntProperty(properties,
+				FETCH_QUEUE_SIZE, DEFAULT_FETCH_QUEUE_SIZE), 1);
+		Object explainValue = properties.get(EXPLAIN);
+		explain = explainValue == null ? DEFAULT_EXPLAIN : Boolean
+				.parseBoolean(explainValue.toString());
+		explainTopN = getIntProperty(properties, EXPLAIN_TOP_N,
+				DEFAULT_EXPLAIN_TOP_N);
+		explainMaxTriples = getIntProperty(properties, EXPLAIN_MAX_TRIPLES,
+				DEFAULT_EXPLAIN_MAX_TRIPLES);
+		int entityCacheTtl = getIntProperty(properties, ENTITY_CACHE_TTL,
+				DEFAULT_ENTITY_CACHE_TTL);
+		entityCache = new EntityCache(entityCacheSize,
+				TimeUnit.SECONDS.toMillis(entityCacheTtl));
+		entityAccessLog = new EntityAccessLog(entityCacheSize);
+		entityAccessLogFile = ce.getBundleContext().getDataFile(
+				ACCESS_LOG_FILE);
+		if (entityAccessLogFile != null) {
+			try {
+				entityAccessLog.read(entityAccessLogFile);
+			} catch (IOException e) {
+				log.warn("Unable to read entity access log "
+						+ entityAccessLogFile, e);
+			}
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, getName() + "-accesslog");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		ThreadPoolExecutor fetchThreadPool = new ThreadPoolExecutor(
+				fetchThreads, fetchThreads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(fetchQueueSize),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, getName() + "-fetch");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		fetchThreadPool.allowCoreThreadTimeOut(true);
+		fetchExecutor = fetchThreadPool;
+		// the warm-up runs asynchronously to not block the activation
+		if (warmupSize > 0 && warmupBudget > 0 && entityAccessLog.size() > 0) {
+			entityWarmup = new EntityWarmup(siteManager, entityCache,
+					entityAccessLog.getMostFrequent(Math.min(warmupSize,
+							entityCacheSize)), warmupBudget);
+			warmupExecutor = Executors
+					.newSingleThreadExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, getName() + "-warmup");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			warmupExecutor.execute(entityWarmup);
+			// the thread ends with the warm-up
+			warmupExecutor.shutdown();
+		}
+		if (entityAccessLogFile != null && accessLogInterval > 0) {
+			executor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					writeEntityAccessLog();
+				}
+			}, accessLogInterval, accessLogInterval, TimeUnit.SECONDS);
+		}
 	}
 
 	/**
@@ -359,6 +938,60 @@ public class FOAFDisambiguationEngine extends
 	 */
 	@Deactivate
 	protected void deactivate(ComponentContext ce) {
+		if (warmupExecutor != null) {
+			warmupExecutor.shutdownNow();
+			warmupExecutor = null;
+		}
+		if (fetchExecutor != null) {
+			fetchExecutor.shutdownNow();
+			fetchExecutor = null;
+		}
+		for (Future<Entity> fetch : fetches.values()) {
+			fetch.cancel(true);
+		}
+		if (executor != null) {
+			executor.shutdownNow();
+			try {
+				// wait for a running write of the access log
+				executor.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			executor = null;
+		}
+		writeEntityAccessLog();
+		entityWarmup = null;
+		entityCache = null;
+		entityAccessLog = null;
+		entityAccessLogFile = null;
 		super.deactivate(ce);
 	}
+
+	private void writeEntityAccessLog() {
+		EntityAccessLog accessLog = entityAccessLog;
+		File file = entityAccessLogFile;
+		if (accessLog != null && file != null) {
+			try {
+				accessLog.write(file, entityCacheSize);
+			} catch (IOException e) {
+				log.warn("Unable to write entity access log " + file, e);
+			}
+		}
+	}
+
+	private static int getIntProperty(Dictionary<String, Object> properties,
+			String key, int defaultValue) throws ConfigurationException {
+		Object value = properties.get(key);
+		if (value == null) {
+			return defaultValue;
+		} else if (value instanceof Number) {
+			return ((Number) value).intValue();
+		}
+		try {
+			return Integer.parseInt(value.toString());
+		} catch (NumberFormatException e) {
+			throw new ConfigurationException(key, "The configured value '"
+					+ value + "' is not a valid integer", e);
+		}
+	}
 }
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A compact, per-document two level Bloom filter used to detect URI
+ * references that were seen at least twice while processing the references of
+ * the suggested entities.
+ * <p>
+ * The first level records references seen once, the second level records
+ * references seen again while already present in the first level. A reference
+ * added twice is therefore always reported by {@link #seenAtLeastTwice(String)}
+ * (no false negatives), while a reference added only once may be reported
+ * with a small false positive probability. False positives only cause a
+ * posting to be materialized that would otherwise have been skipped.
+ * </p>
+ * <p>
+ * The filter grows if more references are added than expected. When the
+ * expected number of references was added to the last slice of the filter a
+ * new slice for twice as many references is added. References are looked up
+ * in all slices and added to the last one.
+ * </p>
+ */
+public class ReferenceCountingFilter {
+
+	/**
+	 * The number of bits used per expected reference (10 bits and 7 hash
+	 * functions result in a false positive probability of about 1%)
+	 */
+	public static final int BITS_PER_REFERENCE = 10;
+	/**
+	 * The number of hash functions used for each reference
+	 */
+	public static final int NUM_HASH_FUNCTIONS = 7;
+	/**
+	 * The minimum number of bits used for each level of the filter
+	 */
+	private static final int MIN_BITS = 1024;
+
+	private final List<Slice> slices = new ArrayList<Slice>();
+	/**
+	 * The slice references are added to
+	 */
+	private Slice current;
+
+	/**
+	 * Creates a filter sized for the expected number of reference insertions
+	 *
+	 * @param expectedReferences
+	 *            the expected number of references added to this filter
+	 */
+	public ReferenceCountingFilter(int expectedReferences) {
+		current = new Slice(Math.max(expectedReferences, 1));
+		slices.add(current);
+	}
+
+	/**
+	 * Records an occurrence of the parsed reference
+	 *
+	 * @param reference
+	 *            the URI reference
+	 */
+	public void add(String reference) {
+		long hash = hash(reference);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		boolean alreadySeen = false;
+		for (Slice slice : slices) {
+			if (slice.contains(slice.seenOnce, h1, h2)) {
+				alreadySeen = true;
+				break;
+			}
+		}
+		if (current.added >= current.capacity) {
+			current = new Slice((int) Math.min(2L * current.capacity,
+					Integer.MAX_VALUE / BITS_PER_REFERENCE));
+			slices.add(current);
+		}
+		current.set(alreadySeen ? current.seenTwice : current.seenOnce, h1, h2);
+		current.added++;
+	}
+
+	/**
+	 * Checks if the parsed reference was (most likely) added at least twice
+	 *
+	 * @param reference
+	 *            the URI reference
+	 * @return <code>false</code> if the reference was definitely added less
+	 *         than two times, otherwise <code>true</code>
+	 */
+	public boolean seenAtLeastTwice(String reference) {
+		long hash = hash(reference);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (Slice slice : slices) {
+			if (slice.contains(slice.seenTwice, h1, h2)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of slices of this filter
+	 */
+	int getSliceCount() {
+		return slices.size();
+	}
+
+	/**
+	 * 64bit FNV-1a hash over the chars of the reference followed by the
+	 * MurmurHash3 finalizer to spread the bits over both 32bit halves
+	 */
+	private static long hash(String reference) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < reference.length(); i++) {
+			hash ^= reference.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb93fe53ed34fL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * A two level filter for a fixed number of references
+	 */
+	private static class Slice {
+
+		private final BitSet seenOnce;
+		private final BitSet seenTwice;
+		private final int numBits;
+		/**
+		 * The number of references this slice is sized for
+		 */
+		private final int capacity;
+		private int added;
+
+		Slice(int expectedReferences) {
+			long bits = (long) expectedReferences * BITS_PER_REFERENCE;
+			this.numBits = (int) Math.min(Math.max(bits, MIN_BITS),
+					Integer.MAX_VALUE - 1);
+			this.capacity = numBits / BITS_PER_REFERENCE;
+			this.seenOnce = new BitSet(numBits);
+			this.seenTwice = new BitSet(numBits);
+		}
+
+		boolean contains(BitSet level, int h1, int h2) {
+			for (int i = 0; i < NUM_HASH_FUNCTIONS; i++) {
+				if (!level.get(index(h1, h2, i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void set(BitSet level, int h1, int h2) {
+			for (int i = 0; i < NUM_HASH_FUNCTIONS; i++) {
+				level.set(index(h1, h2, i));
+			}
+		}
+
+		/**
+		 * Combines the two hashes as <code>h1 + i * h2</code> (Kirsch and
+		 * Mitzenmacher) to simulate {@link #NUM_HASH_FUNCTIONS} hash
+		 * functions
+		 */
+		private int index(int h1, int h2, int i) {
+			int combined = h1 + i * h2;
+			return (combined & Integer.MAX_VALUE) % numBits;
+		}
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.stanbol.entityhub.servicesapi.model.Entity;
+
+/**
+ * Stores the data of all {@link EntityAnnotation}s suggested for a content
+ * item in columns of primitive arrays (one row per suggestion). Entityhub
+ * sites and entity types are interned and stored as int ids.
+ * {@link EntityAnnotation} instances are thin views on a row of this table.
+ * <p>
+ * This class is not thread-safe. A table is intended to be used for the
+ * processing of a single content item.
+ * </p>
+ */
+public class SuggestionTable {
+
+	/**
+	 * The id used for <code>null</code> sites and types
+	 */
+	static final int NO_ID = -1;
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private int size;
+
+	private UriRef[] uriLinks;
+	private UriRef[] entityUris;
+	private Entity[] entities;
+	private String[] entityLabels;
+	private int[] siteIds;
+	private int[] typeIds;
+
+	private double[] originalConfidences;
+	private double[] foafNameDisambiguationScores;
+	private double[] disambiguatedConfidences;
+	private double[] entityReferenceDisambiguatedConfidences;
+	private double[] foafNameDisambiguatedConfidences;
+	// the score assigned based on the number of uri correlations with other
+	// entities
+	private int[] correlationScores;
+	// uri-references from the entity
+	private int[] referencesFromEntities;
+
+	private final List<String> internedStrings = new ArrayList<String>();
+	private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+
+	public SuggestionTable() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            the initial number of rows
+	 */
+	public SuggestionTable(int capacity) {
+		allocate(Math.max(capacity, 1));
+	}
+
+	private void allocate(int capacity) {
+		uriLinks = new UriRef[capacity];
+		entityUris = new UriRef[capacity];
+		entities = new Entity[capacity];
+		entityLabels = new String[capacity];
+		siteIds = new int[capacity];
+		typeIds = new int[capacity];
+		originalConfidences = new double[capacity];
+		foafNameDisambiguationScores = new double[capacity];
+		disambiguatedConfidences = new double[capacity];
+		entityReferenceDisambiguatedConfidences = new double[capacity];
+		foafNameDisambiguatedConfidences = new double[capacity];
+		correlationScores = new int[capacity];
+		referencesFromEntities = new int[capacity];
+	}
+
+	private void grow() {
+		int capacity = entityUris.length * 2;
+		uriLinks = Arrays.copyOf(uriLinks, capacity);
+		entityUris = Arrays.copyOf(entityUris, capacity);
+		entities = Arrays.copyOf(entities, capacity);
+		entityLabels = Arrays.copyOf(entityLabels, capacity);
+		siteIds = Arrays.copyOf(siteIds, capacity);
+		typeIds = Arrays.copyOf(typeIds, capacity);
+		originalConfidences = Arrays.copyOf(originalConfidences, capacity);
+		foafNameDisambiguationScores = Arrays.copyOf(
+				foafNameDisambiguationScores, capacity);
+		disambiguatedConfidences = Arrays.copyOf(disambiguatedConfidences,
+				capacity);
+		entityReferenceDisambiguatedConfidences = Arrays.copyOf(
+				entityReferenceDisambiguatedConfidences, capacity);
+		foafNameDisambiguatedConfidences = Arrays.copyOf(
+				foafNameDisambiguatedConfidences, capacity);
+		correlationScores = Arrays.copyOf(correlationScores, capacity);
+		referencesFromEntities = Arrays.copyOf(referencesFromEntities,
+				capacity);
+	}
+
+	/**
+	 * Adds an empty row to the table
+	 *
+	 * @return the index of the added row
+	 */
+	int addRow() {
+		if (size == entityUris.length) {
+			grow();
+		}
+		siteIds[size] = NO_ID;
+		typeIds[size] = NO_ID;
+		return size++;
+	}
+
+	/**
+	 * @return the number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int intern(String value) {
+		if (value == null) {
+			return NO_ID;
+		}
+		Integer id = stringIds.get(value);
+		if (id == null) {
+			id = internedStrings.size();
+			internedStrings.add(value);
+			stringIds.put(value, id);
+		}
+		return id;
+	}
+
+	private String lookup(int id) {
+		return id == NO_ID ? null : internedStrings.get(id);
+	}
+
+	UriRef getUriLink(int row) {
+		return uriLinks[row];
+	}
+
+	void setUriLink(int row, UriRef uriLink) {
+		uriLinks[row] = uriLink;
+	}
+
+	UriRef getEntityUri(int row) {
+		return entityUris[row];
+	}
+
+	void setEntityUri(int row, UriRef entityUri) {
+		entityUris[row] = entityUri;
+	}
+
+	Entity getEntity(int row) {
+		return entities[row];
+	}
+
+	void setEntity(int row, Entity entity) {
+		entities[row] = entity;
+	}
+
+	String getSite(int row) {
+		return lookup(siteIds[row]);
+	}
+
+	void setSite(int row, String site) {
+		siteIds[row] = intern(site);
+	}
+
+	String getEntityType(int row) {
+		return lookup(typeIds[row]);
+	}
+
+	void setEntityType(int row, String entityType) {
+		typeIds[row] = intern(entityType);
+	}
+
+	String getEntityLabel(int row) {
+		return entityLabels[row];
+	}
+
+	void setEntityLabel(int row, String entityLabel) {
+		entityLabels[row] = entityLabel;
+	}
+
+	double getOriginalConfidence(int row) {
+		return originalConfidences[row];
+	}
+
+	void setOriginalConfidence(int row, double confidence) {
+		originalConfidences[row] = confidence;
+	}
+
+	double getFoafNameDisambiguationScore(int row) {
+		return foafNameDisambiguationScores[row];
+	}
+
+	void setFoafNameDisambiguationScore(int row, double score) {
+		foafNameDisambiguationScores[row] = score;
+	}
+
+	double getDisambiguatedConfidence(int row) {
+		return disambiguatedConfidences[row];
+	}
+
+	void setDisambiguatedConfidence(int row, double confidence) {
+		disambiguatedConfidences[row] = confidence;
+	}
+
+	double getEntityReferenceDisambiguatedConfidence(int row) {
+		return entityReferenceDisambiguatedConfidences[row];
+	}
+
+	void setEntityReferenceDisambiguatedConfidence(int row, double confidence) {
+		entityReferenceDisambiguatedConfidences[row] = confidence;
+	}
+
+	double getFoafNameDisambiguatedConfidence(int row) {
+		return foafNameDisambiguatedConfidences[row];
+	}
+
+	void setFoafNameDisambiguatedConfidence(int row, double confidence) {
+		foafNameDisambiguatedConfidences[row] = confidence;
+	}
+
+	int getCorrelationScore(int row) {
+		return correlationScores[row];
+	}
+
+	void setCorrelationScore(int row, int score) {
+		correlationScores[row] = score;
+	}
+
+	void increaseCorrelationScore(int row, int score) {
+		correlationScores[row] += score;
+	}
+
+	int getReferencesFromEntity(int row) {
+		return referencesFromEntities[row];
+	}
+
+	void setReferencesFromEntity(int row, int references) {
+		referencesFromEntities[row] = references;
+	}
+}
@@ -0,0 +1,355 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import static org.apache.stanbol.enhancer.servicesapi.rdf.Properties.DC_RELATION;
+import static org.apache.stanbol.enhancer.servicesapi.rdf.Properties.ENHANCER_CONFIDENCE;
+import static org.apache.stanbol.enhancer.servicesapi.rdf.Properties.ENHANCER_ENTITY_REFERENCE;
+import static org.apache.stanbol.enhancer.servicesapi.rdf.Properties.ENHANCER_SELECTED_TEXT;
+import static org.apache.stanbol.enhancer.servicesapi.rdf.Properties.RDF_TYPE;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.clerezza.rdf.core.LiteralFactory;
+import org.apache.clerezza.rdf.core.MGraph;
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.clerezza.rdf.core.impl.PlainLiteralImpl;
+import org.apache.clerezza.rdf.core.impl.SimpleMGraph;
+import org.apache.clerezza.rdf.core.impl.TripleImpl;
+import org.apache.stanbol.commons.namespaceprefix.NamespacePrefixService;
+import org.apache.stanbol.enhancer.servicesapi.ContentItem;
+import org.apache.stanbol.enhancer.servicesapi.EnhancementEngine;
+import org.apache.stanbol.enhancer.servicesapi.helper.EnhancementEngineHelper;
+import org.apache.stanbol.enhancer.servicesapi.rdf.TechnicalClasses;
+import org.apache.stanbol.entityhub.servicesapi.model.Entity;
+import org.apache.stanbol.entityhub.servicesapi.model.Reference;
+import org.apache.stanbol.entityhub.servicesapi.model.Representation;
+import org.apache.stanbol.entityhub.servicesapi.model.Text;
+import org.apache.stanbol.entityhub.servicesapi.model.rdf.RdfResourceEnum;
+import org.apache.stanbol.entityhub.servicesapi.site.Site;
+import org.apache.stanbol.entityhub.servicesapi.site.SiteManager;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
+
+/**
+ * Fake Entityhub sites, entities and content items used by the tests of the
+ * {@link FOAFDisambiguationEngine}.
+ */
+final class DisambiguationTestUtils {
+
+	static final String SITE = "fake-site";
+	static final String FOAF_NAMESPACE = "http://xmlns.com/foaf/0.1/";
+	static final String REFERENCE_FIELD = FOAF_NAMESPACE + "knows";
+
+	private static final LiteralFactory lf = LiteralFactory.getInstance();
+
+	private DisambiguationTestUtils() {
+	}
+
+	interface Answer {
+		Object answer(String method, Object[] args);
+	}
+
+	/**
+	 * Creates a fake implementation of the parsed interface. Methods not
+	 * handled by the {@link Answer} return <code>null</code>.
+	 */
+	static <T> T proxy(final Class<T> type, final Answer answer) {
+		return type.cast(Proxy.newProxyInstance(
+				DisambiguationTestUtils.class.getClassLoader(),
+				new Class<?>[] { type }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) {
+						if ("equals".equals(method.getName())) {
+							return proxy == args[0];
+						} else if ("hashCode".equals(method.getName())) {
+							return System.identityHashCode(proxy);
+						} else if ("toString".equals(method.getName())) {
+							return type.getSimpleName() + "@"
+									+ System.identityHashCode(proxy);
+						}
+						return answer.answer(method.getName(), args);
+					}
+				}));
+	}
+
+	/**
+	 * Creates an entity of the {@link #SITE} with the parsed URI references
+	 * as values of the {@link #REFERENCE_FIELD}
+	 */
+	static Entity createEntity(String id, String... references) {
+		return createPerson(id, null, references);
+	}
+
+	/**
+	 * Creates an entity of the {@link #SITE} with the parsed foaf:name and
+	 * the parsed URI references as values of the {@link #REFERENCE_FIELD}
+	 */
+	static Entity createPerson(final String id, final String name,
+			String... references) {
+		final Text foafName = name == null ? null : proxy(Text.class,
+				new Answer() {
+					@Override
+					public Object answer(String method, Object[] args) {
+						return "getText".equals(method) ? name : null;
+					}
+				});
+		final List<Reference> values = new ArrayList<Reference>();
+		for (final String reference : references) {
+			values.add(proxy(Reference.class, new Answer() {
+				@Override
+				public Object answer(String method, Object[] args) {
+					return "getReference".equals(method) ? reference : null;
+				}
+			}));
+		}
+		final Representation representation = proxy(Representation.class,
+				new Answer() {
+					@Override
+					public Object answer(String method, Object[] args) {
+						if ("getId".equals(method)) {
+							return id;
+						} else if ("getFirst".equals(method)) {
+							return (FOAF_NAMESPACE + "name").equals(args[0]) ? foafName
+									: null;
+						} else if ("getFieldNames".equals(method)) {
+							return Collections.singleton(REFERENCE_FIELD)
+									.iterator();
+						} else if ("getReferences".equals(method)) {
+							return REFERENCE_FIELD.equals(args[0]) ? values
+									.iterator() : Collections.emptyList()
+									.iterator();
+						}
+						return null;
+					}
+				});
+		return proxy(Entity.class, new Answer() {
+			@Override
+			public Object answer(String method, Object[] args) {
+				if ("getId".equals(method)) {
+					return id;
+				} else if ("getSite".equals(method)) {
+					return SITE;
+				} else if ("getRepresentation".equals(method)) {
+					return representation;
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * A fake Entityhub {@link Site} that counts the requests per entity and
+	 * hangs until interrupted for the configured entities
+	 */
+	static class FakeSite {
+
+		private final Map<String, Entity> entities = new ConcurrentHashMap<String, Entity>();
+		private final Set<String> hanging = Collections
+				.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+
+		FakeSite add(Entity entity) {
+			entities.put(entity.getId(), entity);
+			return this;
+		}
+
+		FakeSite addAll(Collection<Entity> entities) {
+			for (Entity entity : entities) {
+				add(entity);
+			}
+			return this;
+		}
+
+		FakeSite hang(String... entityUris) {
+			hanging.addAll(Arrays.asList(entityUris));
+			return this;
+		}
+
+		int getRequests(String entityUri) {
+			AtomicInteger count = requests.get(entityUri);
+			return count == null ? 0 : count.get();
+		}
+
+		Site asSite() {
+			return proxy(Site.class, new Answer() {
+				@Override
+				public Object answer(String method, Object[] args) {
+					if ("getId".equals(method)) {
+						return SITE;
+					} else if (!"getEntity".equals(method)) {
+						return null;
+					}
+					String id = (String) args[0];
+					synchronized (requests) {
+						if (!requests.containsKey(id)) {
+							requests.put(id, new AtomicInteger());
+						}
+					}
+					requests.get(id).incrementAndGet();
+					if (hanging.contains(id)) {
+						try {
+							Thread.sleep(Long.MAX_VALUE);
+						} catch (InterruptedException e) {
+							// released by the test
+						}
+						return null;
+					}
+					return entities.get(id);
+				}
+			});
+		}
+
+		SiteManager asSiteManager() {
+			final Site site = asSite();
+			return proxy(SiteManager.class, new Answer() {
+				@Override
+				public Object answer(String method, Object[] args) {
+					return "getSite".equals(method) && SITE.equals(args[0]) ? site
+							: null;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Sets the fake services and activates the engine with the parsed
+	 * properties
+	 */
+	static void activate(FOAFDisambiguationEngine engine, FakeSite site,
+			Map<String, Object> config, final File dataFile) throws Exception {
+		engine.siteManager = site.asSiteManager();
+		engine.namespacePrefixService = proxy(NamespacePrefixService.class,
+				new Answer() {
+					@Override
+					public Object answer(String method, Object[] args) {
+						return "getNamespace".equals(method) ? FOAF_NAMESPACE
+								: null;
+					}
+				});
+		final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+		properties.put(EnhancementEngine.PROPERTY_NAME, "disambiguation-foaf");
+		properties.put(FOAFDisambiguationEngine.WARMUP_SIZE, 0);
+		properties.put(FOAFDisambiguationEngine.ACCESS_LOG_INTERVAL, 0);
+		for (Map.Entry<String, Object> entry : config.entrySet()) {
+			properties.put(entry.getKey(), entry.getValue());
+		}
+		engine.activate(proxy(ComponentContext.class, new Answer() {
+			@Override
+			public Object answer(String method, Object[] args) {
+				if ("getProperties".equals(method)) {
+					return properties;
+				} else if ("getBundleContext".equals(method)) {
+					return proxy(BundleContext.class, new Answer() {
+						@Override
+						public Object answer(String method, Object[] args) {
+							return "getDataFile".equals(method) ? dataFile
+									: null;
+						}
+					});
+				}
+				return null;
+			}
+		}));
+	}
+
+	/**
+	 * Adds a fise:TextAnnotation with the parsed selected text
+	 */
+	static UriRef addTextAnnotation(MGraph metadata, String selectedText) {
+		UriRef textAnnotation = new UriRef("urn:test:text-annotation:"
+				+ selectedText);
+		metadata.add(new TripleImpl(textAnnotation, RDF_TYPE,
+				TechnicalClasses.ENHANCER_TEXTANNOTATION));
+		metadata.add(new TripleImpl(textAnnotation, ENHANCER_SELECTED_TEXT,
+				new PlainLiteralImpl(selectedText)));
+		return textAnnotation;
+	}
+
+	/**
+	 * Adds a fise:EntityAnnotation of an entity of the {@link #SITE}
+	 */
+	static UriRef addEntityAnnotation(MGraph metadata,
+			UriRef textAnnotation, String entityUri, double confidence) {
+		UriRef entityAnnotation = new UriRef("urn:test:entity-annotation:"
+				+ entityUri);
+		metadata.add(new TripleImpl(entityAnnotation, DC_RELATION,
+				textAnnotation));
+		metadata.add(new TripleImpl(entityAnnotation,
+				ENHANCER_ENTITY_REFERENCE, new UriRef(entityUri)));
+		metadata.add(new TripleImpl(entityAnnotation, ENHANCER_CONFIDENCE, lf
+				.createTypedLiteral(confidence)));
+		metadata.add(new TripleImpl(entityAnnotation, new UriRef(
+				RdfResourceEnum.site.getUri()), new PlainLiteralImpl(SITE)));
+		return entityAnnotation;
+	}
+
+	/**
+	 * Creates metadata with one text annotation suggesting all parsed
+	 * entities with the parsed confidence
+	 */
+	static MGraph createMetadata(Collection<Entity> entities,
+			double confidence) {
+		MGraph metadata = new SimpleMGraph();
+		UriRef textAnnotation = addTextAnnotation(metadata, "Alice");
+		for (Entity entity : entities) {
+			addEntityAnnotation(metadata, textAnnotation, entity.getId(),
+					confidence);
+		}
+		return metadata;
+	}
+
+	static ContentItem createContentItem(final MGraph metadata) {
+		final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		final UriRef uri = new UriRef("urn:test:content-item:"
+				+ System.identityHashCode(metadata));
+		return proxy(ContentItem.class, new Answer() {
+			@Override
+			public Object answer(String method, Object[] args) {
+				if ("getMetadata".equals(method)) {
+					return metadata;
+				} else if ("getLock".equals(method)) {
+					return lock;
+				} else if ("getUri".equals(method)) {
+					return uri;
+				}
+				return null;
+			}
+		});
+	}
+
+	static double getConfidence(MGraph metadata, UriRef entityAnnotation) {
+		return EnhancementEngineHelper.get(metadata, entityAnnotation,
+				ENHANCER_CONFIDENCE, Double.class, lf);
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.stanbol.enhancer.engine.disambiguation.foaf.EntityAccessLog.EntityAccess;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests persisting and trimming the {@link EntityAccessLog}
+ */
+public class EntityAccessLogTest {
+
+	private static final String SITE = "fake-site";
+	private static final String PERSON = "http://example.org/person/";
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("entity-access", ".log");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+		new File(file.getPath() + ".tmp").delete();
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		EntityAccessLog accessLog = new EntityAccessLog(10);
+		record(accessLog, "alice", 3);
+		record(accessLog, "bob", 1);
+		record(accessLog, "carol", 2);
+		accessLog.write(file, 10);
+
+		EntityAccessLog read = new EntityAccessLog(10);
+		read.read(file);
+
+		List<EntityAccess> accesses = read.getMostFrequent(10);
+		assertEquals(3, accesses.size());
+		assertAccess(accesses.get(0), "alice", 3);
+		assertAccess(accesses.get(1), "carol", 2);
+		assertAccess(accesses.get(2), "bob", 1);
+		// counts read from the file are added to recorded ones
+		record(read, "bob", 4);
+		assertAccess(read.getMostFrequent(1).get(0), "bob", 5);
+	}
+
+	@Test
+	public void testWriteLimit() throws IOException {
+		EntityAccessLog accessLog = new EntityAccessLog(10);
+		record(accessLog, "alice", 3);
+		record(accessLog, "bob", 1);
+		record(accessLog, "carol", 2);
+		accessLog.write(file, 2);
+
+		EntityAccessLog read = new EntityAccessLog(10);
+		read.read(file);
+		assertEquals(2, read.size());
+		assertAccess(read.getMostFrequent(2).get(1), "carol", 2);
+	}
+
+	@Test
+	public void testReadIgnoresInvalidLines() throws IOException {
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write("2\t" + SITE + "\t" + PERSON + "alice\n");
+			writer.write("invalid line\n");
+			writer.write("x\t" + SITE + "\t" + PERSON + "bob\n");
+		} finally {
+			writer.close();
+		}
+		EntityAccessLog read = new EntityAccessLog(10);
+		read.read(file);
+		assertEquals(1, read.size());
+	}
+
+	@Test
+	public void testTrimmedToMostFrequent() throws IOException {
+		int maxEntries = 5;
+		EntityAccessLog accessLog = new EntityAccessLog(maxEntries);
+		for (int i = 0; i < maxEntries; i++) {
+			record(accessLog, "frequent-" + i, 10);
+		}
+		// recording more than twice the maximum entries trims the log
+		for (int i = 0; i < maxEntries + 1; i++) {
+			record(accessLog, "rare-" + i, 1);
+		}
+		assertEquals(maxEntries, accessLog.size());
+		for (EntityAccess access : accessLog.getMostFrequent(maxEntries)) {
+			assertEquals(10, access.getCount());
+		}
+		// not trimmed up to twice the maximum entries
+		for (int i = 0; i < maxEntries; i++) {
+			record(accessLog, "rare-" + i, 1);
+		}
+		assertEquals(maxEntries * 2, accessLog.size());
+		// trimmed on write
+		accessLog.write(file, maxEntries * 2);
+		assertEquals(maxEntries, accessLog.size());
+	}
+
+	private static void record(EntityAccessLog accessLog, String name,
+			int count) {
+		for (int i = 0; i < count; i++) {
+			accessLog.record(SITE, PERSON + name);
+		}
+	}
+
+	private static void assertAccess(EntityAccess access, String name,
+			int count) {
+		assertEquals(SITE, access.getSite());
+		assertEquals(PERSON + name, access.getEntityUri());
+		assertEquals(count, access.getCount());
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createEntity;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.stanbol.entityhub.servicesapi.model.Entity;
+import org.junit.Test;
+
+/**
+ * Tests the LRU eviction and the expiry of the {@link EntityCache}
+ */
+public class EntityCacheTest {
+
+	private static final String ALICE = "http://example.org/person/alice";
+	private static final String BOB = "http://example.org/person/bob";
+	private static final String CAROL = "http://example.org/person/carol";
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		EntityCache cache = new EntityCache(2, 0);
+		Entity alice = createEntity(ALICE);
+		cache.put(alice);
+		cache.put(createEntity(BOB));
+		// access alice so that bob is the least recently used entity
+		assertSame(alice, cache.get(ALICE));
+		cache.put(createEntity(CAROL));
+
+		assertEquals(2, cache.size());
+		assertTrue(cache.contains(ALICE));
+		assertFalse(cache.contains(BOB));
+		assertTrue(cache.contains(CAROL));
+	}
+
+	@Test
+	public void testExpiry() {
+		final long[] now = new long[] { 1000 };
+		EntityCache cache = new EntityCache(10, 500) {
+			@Override
+			protected long currentTimeMillis() {
+				return now[0];
+			}
+		};
+		cache.put(createEntity(ALICE));
+		now[0] += 200;
+		cache.put(createEntity(BOB));
+		now[0] += 299;
+		assertTrue(cache.contains(ALICE));
+
+		now[0] += 1;
+		assertNull(cache.get(ALICE));
+		assertFalse(cache.contains(ALICE));
+		assertTrue(cache.contains(BOB));
+		assertEquals(1, cache.size());
+
+		now[0] += 200;
+		assertNull(cache.get(BOB));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testNoExpiry() {
+		final long[] now = new long[] { 1000 };
+		EntityCache cache = new EntityCache(10, 0) {
+			@Override
+			protected long currentTimeMillis() {
+				return now[0];
+			}
+		};
+		cache.put(createEntity(ALICE));
+		now[0] += Integer.MAX_VALUE;
+		assertTrue(cache.contains(ALICE));
+	}
+}
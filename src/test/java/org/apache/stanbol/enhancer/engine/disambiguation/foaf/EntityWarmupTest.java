@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.SITE;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createEntity;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.FakeSite;
+import org.apache.stanbol.enhancer.engine.disambiguation.foaf.EntityWarmup.State;
+import org.junit.Test;
+
+/**
+ * Tests the states and the time budget of the {@link EntityWarmup}
+ */
+public class EntityWarmupTest {
+
+	private static final String ALICE = "http://example.org/person/alice";
+	private static final String BOB = "http://example.org/person/bob";
+	private static final String HANGING = "http://example.org/person/hanging";
+	private static final String MISSING = "http://example.org/person/missing";
+
+	private final FakeSite site = new FakeSite().add(createEntity(ALICE)).add(
+			createEntity(BOB));
+	private final EntityCache cache = new EntityCache(10, 0);
+	private final EntityAccessLog accessLog = new EntityAccessLog(10);
+
+	@Test
+	public void testCompleted() {
+		accessLog.record(SITE, ALICE);
+		accessLog.record(SITE, BOB);
+		accessLog.record(SITE, MISSING);
+		EntityWarmup warmup = createWarmup(10000);
+		assertEquals(State.PENDING, warmup.getState());
+		assertEquals(3, warmup.getPlanned());
+
+		warmup.run();
+
+		assertEquals(State.COMPLETED, warmup.getState());
+		assertEquals(2, warmup.getLoaded());
+		assertEquals(1, warmup.getFailed());
+		assertTrue(cache.contains(ALICE));
+		assertTrue(cache.contains(BOB));
+	}
+
+	@Test
+	public void testHangingFetchRespectsBudget() {
+		int budget = 300;
+		site.hang(HANGING);
+		// the hanging entity is the most frequent one and is loaded first
+		accessLog.record(SITE, HANGING);
+		accessLog.record(SITE, HANGING);
+		accessLog.record(SITE, ALICE);
+		EntityWarmup warmup = createWarmup(budget);
+
+		long start = System.currentTimeMillis();
+		warmup.run();
+		long duration = System.currentTimeMillis() - start;
+
+		assertTrue("warm-up took " + duration + "ms", duration < budget * 4);
+		assertEquals(State.BUDGET_EXCEEDED, warmup.getState());
+		assertEquals(0, warmup.getLoaded());
+		assertEquals(1, warmup.getFailed());
+		assertEquals(1, site.getRequests(HANGING));
+		assertEquals(0, site.getRequests(ALICE));
+	}
+
+	@Test
+	public void testInterrupted() {
+		accessLog.record(SITE, ALICE);
+		EntityWarmup warmup = createWarmup(10000);
+		Thread.currentThread().interrupt();
+		try {
+			warmup.run();
+		} finally {
+			// clear the interrupt for the following tests
+			Thread.interrupted();
+		}
+		assertEquals(State.INTERRUPTED, warmup.getState());
+		assertEquals(0, warmup.getLoaded());
+	}
+
+	private EntityWarmup createWarmup(long budget) {
+		return new EntityWarmup(site.asSiteManager(), cache,
+				accessLog.getMostFrequent(10), budget);
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.activate;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createContentItem;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createEntity;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createMetadata;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.proxy;
+import static org.apache.stanbol.enhancer.servicesapi.rdf.Properties.ENHANCER_CONFIDENCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.clerezza.rdf.core.MGraph;
+import org.apache.clerezza.rdf.core.Triple;
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.Answer;
+import org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.FakeSite;
+import org.apache.stanbol.entityhub.servicesapi.model.Entity;
+import org.apache.stanbol.entityhub.servicesapi.model.Representation;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests that content items processed concurrently by the same
+ * {@link FOAFDisambiguationEngine} do not share their disambiguation state.
+ */
+public class FOAFDisambiguationEngineConcurrencyTest {
+
+	private static final String ORG = "http://example.org/organization/";
+	private static final String PERSON = "http://example.org/person/";
+
+	private final CountDownLatch blocked = new CountDownLatch(1);
+	private final CountDownLatch released = new CountDownLatch(1);
+
+	private final List<Entity> firstEntities = Arrays.asList(
+			blockOnce(createEntity(PERSON + "alice", ORG + "acme", ORG
+					+ "apache")), createEntity(PERSON + "bob", ORG + "acme"));
+	private final List<Entity> secondEntities = Arrays.asList(
+			createEntity(PERSON + "carol", ORG + "initech"),
+			createEntity(PERSON + "dave", ORG + "initech", ORG + "globex"));
+	private FOAFDisambiguationEngine engine;
+
+	@After
+	public void tearDown() {
+		released.countDown();
+		if (engine != null) {
+			engine.deactivate(null);
+		}
+	}
+
+	@Test
+	public void testConcurrentContentItems() throws Exception {
+		engine = new FOAFDisambiguationEngine();
+		activate(engine, new FakeSite().addAll(firstEntities).addAll(
+				secondEntities), Collections.<String, Object> emptyMap(), null);
+		final MGraph first = createMetadata(firstEntities, 0.5);
+		MGraph second = createMetadata(secondEntities, 0.5);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					engine.computeEnhancements(createContentItem(first));
+				} catch (Throwable t) {
+					failure.set(t);
+				}
+			}
+		});
+		thread.start();
+		// the second content item is processed while the first one is
+		// processing the references of its entities
+		assertTrue(blocked.await(10, TimeUnit.SECONDS));
+		engine.computeEnhancements(createContentItem(second));
+		released.countDown();
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+		assertNull(failure.get());
+
+		// same results as processing the content items one after the other
+		MGraph firstAlone = createMetadata(firstEntities, 0.5);
+		MGraph secondAlone = createMetadata(secondEntities, 0.5);
+		engine.computeEnhancements(createContentItem(firstAlone));
+		engine.computeEnhancements(createContentItem(secondAlone));
+		assertEquals(2, getConfidences(first).size());
+		assertEquals(getConfidences(firstAlone), getConfidences(first));
+		assertEquals(2, getConfidences(second).size());
+		assertEquals(getConfidences(secondAlone), getConfidences(second));
+	}
+
+	/**
+	 * Blocks the first access to the fields of the entity until the test
+	 * {@link #released} it
+	 */
+	private Entity blockOnce(final Entity entity) {
+		final Representation representation = entity.getRepresentation();
+		final AtomicBoolean first = new AtomicBoolean(true);
+		final Representation blocking = proxy(Representation.class,
+				new Answer() {
+					@Override
+					public Object answer(String method, Object[] args) {
+						if ("getId".equals(method)) {
+							return representation.getId();
+						} else if ("getFirst".equals(method)) {
+							return representation.getFirst((String) args[0]);
+						} else if ("getReferences".equals(method)) {
+							return representation
+									.getReferences((String) args[0]);
+						} else if ("getFieldNames".equals(method)) {
+							if (first.getAndSet(false)) {
+								blocked.countDown();
+								try {
+									released.await(10, TimeUnit.SECONDS);
+								} catch (InterruptedException e) {
+									Thread.currentThread().interrupt();
+								}
+							}
+							return representation.getFieldNames();
+						}
+						return null;
+					}
+				});
+		return proxy(Entity.class, new Answer() {
+			@Override
+			public Object answer(String method, Object[] args) {
+				if ("getRepresentation".equals(method)) {
+					return blocking;
+				} else if ("getId".equals(method)) {
+					return entity.getId();
+				} else if ("getSite".equals(method)) {
+					return entity.getSite();
+				}
+				return null;
+			}
+		});
+	}
+
+	private static Map<UriRef, Double> getConfidences(MGraph metadata) {
+		Map<UriRef, Double> confidences = new HashMap<UriRef, Double>();
+		Iterator<Triple> it = metadata.filter(null, ENHANCER_CONFIDENCE, null);
+		while (it.hasNext()) {
+			UriRef entityAnnotation = (UriRef) it.next().getSubject();
+			confidences.put(entityAnnotation, DisambiguationTestUtils
+					.getConfidence(metadata, entityAnnotation));
+		}
+		return confidences;
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationExplanation.CORRELATED_ENTITY;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationExplanation.CORRELATION_CONFIDENCE;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationExplanation.FOAF_NAME_CONFIDENCE;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationExplanation.FOAF_NAME_SCORE;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationExplanation.ORIGINAL_CONFIDENCE;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationExplanation.SHARED_REFERENCE;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.FOAF_NAMESPACE;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.activate;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createContentItem;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createEntity;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createMetadata;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.getConfidence;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.clerezza.rdf.core.MGraph;
+import org.apache.clerezza.rdf.core.NonLiteral;
+import org.apache.clerezza.rdf.core.Resource;
+import org.apache.clerezza.rdf.core.Triple;
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.FakeSite;
+import org.apache.stanbol.entityhub.servicesapi.model.Entity;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the explain mode of the {@link FOAFDisambiguationEngine}
+ */
+public class FOAFDisambiguationEngineExplainTest {
+
+	private static final String ORG = "http://example.org/organization/";
+	private static final String PERSON = "http://example.org/person/";
+	private static final UriRef ALICE = new UriRef(PERSON + "alice");
+	private static final UriRef BOB = new UriRef(PERSON + "bob");
+	private static final UriRef CAROL = new UriRef(PERSON + "carol");
+	private static final UriRef ALICE_ANNOTATION = new UriRef(
+			"urn:test:entity-annotation:" + ALICE.getUnicodeString());
+
+	private static final List<UriRef> SCALAR_PREDICATES = Arrays.asList(
+			FOAF_NAME_SCORE, ORIGINAL_CONFIDENCE, FOAF_NAME_CONFIDENCE,
+			CORRELATION_CONFIDENCE);
+
+	private final List<Entity> entities = Arrays.asList(
+			createEntity(ALICE.getUnicodeString(), ORG + "acme", ORG
+					+ "apache", ORG + "apache", ORG + "alice-only"),
+			createEntity(BOB.getUnicodeString(), ORG + "acme", ORG + "apache"),
+			createEntity(CAROL.getUnicodeString(), ORG + "apache"));
+	private FOAFDisambiguationEngine engine;
+
+	@After
+	public void tearDown() {
+		if (engine != null) {
+			engine.deactivate(null);
+		}
+	}
+
+	@Test
+	public void testExplainAddsTriples() throws Exception {
+		MGraph metadata = computeEnhancements(true, 5, 1000);
+
+		Map<NonLiteral, List<Triple>> explanations = getExplanations(metadata);
+		assertEquals(entities.size(), explanations.size());
+		for (List<Triple> triples : explanations.values()) {
+			assertScalars(triples);
+		}
+		List<Triple> alice = explanations.get(ALICE_ANNOTATION);
+		assertEquals(new HashSet<Resource>(Arrays.asList(BOB, CAROL)),
+				getObjects(alice, CORRELATED_ENTITY));
+		assertEquals(new HashSet<Resource>(Arrays.asList(new UriRef(ORG
+				+ "acme"), new UriRef(ORG + "apache"))), getObjects(alice,
+				SHARED_REFERENCE));
+	}
+
+	@Test
+	public void testTopN() throws Exception {
+		MGraph metadata = computeEnhancements(true, 1, 1000);
+
+		List<Triple> alice = getExplanations(metadata).get(ALICE_ANNOTATION);
+		// bob shares two references, carol one
+		assertEquals(new HashSet<Resource>(Arrays.asList(BOB)), getObjects(
+				alice, CORRELATED_ENTITY));
+		// apache is shared by three entities, acme by two
+		assertEquals(
+				new HashSet<Resource>(Arrays.asList(new UriRef(ORG + "apache"))),
+				getObjects(alice, SHARED_REFERENCE));
+	}
+
+	@Test
+	public void testMaxTriples() throws Exception {
+		int maxTriples = 6;
+		MGraph metadata = computeEnhancements(true, 5, maxTriples);
+
+		Map<NonLiteral, List<Triple>> explanations = getExplanations(metadata);
+		int size = 0;
+		for (List<Triple> triples : explanations.values()) {
+			// entity annotations are explained with all scalar values or not
+			assertScalars(triples);
+			size += triples.size();
+		}
+		assertEquals(1, explanations.size());
+		assertEquals(maxTriples, size);
+	}
+
+	@Test
+	public void testExplainOff() throws Exception {
+		MGraph metadata = computeEnhancements(false, 5, 1000);
+
+		assertTrue(getExplanations(metadata).isEmpty());
+	}
+
+	/**
+	 * The confidences are calculated before the explanation is collected, but
+	 * applyDisambiguationResults still calculates them before writing
+	 */
+	@Test
+	public void testApplyCalculatesConfidences() throws Exception {
+		engine = new FOAFDisambiguationEngine();
+		activate(engine, new FakeSite(), Collections.<String, Object> emptyMap(),
+				null);
+		MGraph metadata = createMetadata(entities.subList(0, 1), 0.5);
+		DisambiguationContext context = new DisambiguationContext(
+				FOAF_NAMESPACE);
+		EntityAnnotation alice = EntityAnnotation.createFromUri(
+				context.getSuggestionTable(), metadata, ALICE_ANNOTATION);
+		alice.setFoafNameDisambiguationScore(1.0);
+		context.getAllEntityAnnotations().put(ALICE, alice);
+
+		engine.applyDisambiguationResults(metadata, context);
+
+		// 1/5 of the original confidence plus 2/5 of the foaf:name score
+		assertEquals(0.5, getConfidence(metadata, ALICE_ANNOTATION), 1e-9);
+	}
+
+	private MGraph computeEnhancements(boolean explain, int topN,
+			int maxTriples) throws Exception {
+		Map<String, Object> config = new HashMap<String, Object>();
+		config.put(FOAFDisambiguationEngine.EXPLAIN, explain);
+		config.put(FOAFDisambiguationEngine.EXPLAIN_TOP_N, topN);
+		config.put(FOAFDisambiguationEngine.EXPLAIN_MAX_TRIPLES, maxTriples);
+		engine = new FOAFDisambiguationEngine();
+		activate(engine, new FakeSite().addAll(entities), config, null);
+		MGraph metadata = createMetadata(entities, 0.5);
+		engine.computeEnhancements(createContentItem(metadata));
+		return metadata;
+	}
+
+	/**
+	 * @return the explanation triples by entity annotation
+	 */
+	private static Map<NonLiteral, List<Triple>> getExplanations(
+			MGraph metadata) {
+		Map<NonLiteral, List<Triple>> explanations = new HashMap<NonLiteral, List<Triple>>();
+		Iterator<Triple> it = metadata.iterator();
+		while (it.hasNext()) {
+			Triple triple = it.next();
+			if (!triple.getPredicate().getUnicodeString()
+					.startsWith(DisambiguationExplanation.NAMESPACE)) {
+				continue;
+			}
+			List<Triple> triples = explanations.get(triple.getSubject());
+			if (triples == null) {
+				triples = new ArrayList<Triple>();
+				explanations.put(triple.getSubject(), triples);
+			}
+			triples.add(triple);
+		}
+		return explanations;
+	}
+
+	private static void assertScalars(List<Triple> triples) {
+		for (UriRef predicate : SCALAR_PREDICATES) {
+			assertEquals(predicate.getUnicodeString(), 1,
+					getObjects(triples, predicate).size());
+		}
+	}
+
+	private static Set<Resource> getObjects(List<Triple> triples,
+			UriRef predicate) {
+		Set<Resource> objects = new HashSet<Resource>();
+		for (Triple triple : triples) {
+			if (triple.getPredicate().equals(predicate)) {
+				objects.add(triple.getObject());
+			}
+		}
+		return objects;
+	}
+}
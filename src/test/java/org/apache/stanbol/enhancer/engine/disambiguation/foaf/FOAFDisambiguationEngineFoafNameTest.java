@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.activate;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.addEntityAnnotation;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.addTextAnnotation;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createContentItem;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createPerson;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.getConfidence;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import org.apache.clerezza.rdf.core.MGraph;
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.clerezza.rdf.core.impl.SimpleMGraph;
+import org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.FakeSite;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the matching of the fise:selected-text with the foaf:name of the
+ * suggested entities.
+ */
+public class FOAFDisambiguationEngineFoafNameTest {
+
+	private static final double ORIGINAL_CONFIDENCE = 0.5;
+
+	private static final String ALICE = "http://example.org/person/alice";
+	private static final String ALICE_SMITH = "http://example.org/person/alice-smith";
+	private static final String BOB = "http://example.org/person/bob";
+
+	private final FakeSite site = new FakeSite()
+			.add(createPerson(ALICE, "Alice Smith"))
+			.add(createPerson(ALICE_SMITH, "alice-smith"))
+			.add(createPerson(BOB, "Bob Smith"));
+	private FOAFDisambiguationEngine engine;
+
+	@After
+	public void tearDown() {
+		if (engine != null) {
+			engine.deactivate(null);
+		}
+	}
+
+	@Test
+	public void testAllSuggestionsMatchTheSelectedText() throws Exception {
+		engine = new FOAFDisambiguationEngine();
+		activate(engine, site, Collections.<String, Object> emptyMap(), null);
+		MGraph metadata = new SimpleMGraph();
+		UriRef textAnnotation = addTextAnnotation(metadata, "Alice Smith");
+		UriRef alice = addEntityAnnotation(metadata, textAnnotation, ALICE,
+				ORIGINAL_CONFIDENCE);
+		UriRef aliceSmith = addEntityAnnotation(metadata, textAnnotation,
+				ALICE_SMITH, ORIGINAL_CONFIDENCE);
+		UriRef bob = addEntityAnnotation(metadata, textAnnotation, BOB,
+				ORIGINAL_CONFIDENCE);
+
+		engine.computeEnhancements(createContentItem(metadata));
+
+		// without references only the original confidence (1/5) and the
+		// foaf:name match (2/5) count. Both matching suggestions get the
+		// foaf:name score, whatever their order
+		assertEquals(ORIGINAL_CONFIDENCE / 5 + 0.4, getConfidence(metadata,
+				alice), 1e-9);
+		assertEquals(ORIGINAL_CONFIDENCE / 5 + 0.4, getConfidence(metadata,
+				aliceSmith), 1e-9);
+		assertEquals(ORIGINAL_CONFIDENCE / 5, getConfidence(metadata, bob),
+				1e-9);
+	}
+}
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.activate;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createContentItem;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createEntity;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createMetadata;
+import static org.apache.stanbol.enhancer.servicesapi.rdf.Properties.ENHANCER_CONFIDENCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.clerezza.rdf.core.MGraph;
+import org.apache.clerezza.rdf.core.Triple;
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.FakeSite;
+import org.apache.stanbol.enhancer.servicesapi.ContentItem;
+import org.apache.stanbol.entityhub.servicesapi.model.Entity;
+import org.apache.stanbol.entityhub.servicesapi.model.Reference;
+import org.apache.stanbol.entityhub.servicesapi.model.Representation;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests that skipping uncorrelated references with the
+ * {@link ReferenceCountingFilter} does not change the correlation scores of
+ * entities compared to the single pass processing materializing all
+ * references, and compares both in time and allocated memory.
+ */
+public class FOAFDisambiguationEngineReferenceFilterTest {
+
+	private static final Logger log = LoggerFactory
+			.getLogger(FOAFDisambiguationEngineReferenceFilterTest.class);
+
+	private static final String ORG = "http://example.org/organization/";
+	private static final String PERSON = "http://example.org/person/";
+
+	private static final int WARMUP_RUNS = 10;
+	private static final int MEASURED_RUNS = 20;
+
+	private final List<RecordingEngine> engines = new ArrayList<RecordingEngine>();
+
+	@After
+	public void tearDown() {
+		for (RecordingEngine engine : engines) {
+			engine.deactivate(null);
+		}
+	}
+
+	@Test
+	public void testSameCorrelationScoresAsSinglePass() throws Exception {
+		List<Entity> entities = new ArrayList<Entity>();
+		// shared references
+		entities.add(createEntity(PERSON + "alice", ORG + "acme", ORG + "apache",
+				ORG + "alice-only"));
+		entities.add(createEntity(PERSON + "bob", ORG + "acme", ORG + "apache",
+				ORG + "bob-only-1", ORG + "bob-only-2"));
+		entities.add(createEntity(PERSON + "carol", ORG + "apache"));
+		// duplicate references within one entity and shared with another one
+		entities.add(createEntity(PERSON + "dave", ORG + "dave-twice", ORG
+				+ "dave-twice", ORG + "initech", ORG + "initech"));
+		entities.add(createEntity(PERSON + "erin", ORG + "initech"));
+		// unique references only
+		entities.add(createEntity(PERSON + "frank", ORG + "frank-only-1", ORG
+				+ "frank-only-2", ORG + "frank-only-3"));
+		// no references
+		entities.add(createEntity(PERSON + "grace"));
+
+		RecordingEngine filtered = createEngine(entities, new RecordingEngine());
+		RecordingEngine singlePass = createEngine(entities,
+				new SinglePassEngine());
+		MGraph filteredMetadata = createMetadata(entities, 0.5);
+		MGraph singlePassMetadata = createMetadata(entities, 0.5);
+		filtered.computeEnhancements(createContentItem(filteredMetadata));
+		singlePass.computeEnhancements(createContentItem(singlePassMetadata));
+
+		assertEquals(entities.size(), singlePass.correlationScores.size());
+		assertEquals(singlePass.correlationScores, filtered.correlationScores);
+		assertEquals(getConfidences(singlePassMetadata),
+				getConfidences(filteredMetadata));
+		// acme, apache, initech and dave-twice
+		assertEquals(4, filtered.referencePostings);
+		assertEquals(10, singlePass.referencePostings);
+	}
+
+	/**
+	 * Entities with a high fan-out of unique references and a few shared ones.
+	 * Only the shared references (and false positives of the filter) are
+	 * expected to be materialized. Both engines are warmed up (which also
+	 * loads all entities into their caches) and measured alternately. The
+	 * bytes allocated by the current thread are only compared if the JVM
+	 * supports measuring them.
+	 */
+	@Test
+	public void testHighFanOutReferences() throws Exception {
+		int entityCount = 100;
+		int uniqueReferences = 500;
+		int sharedReferences = 5;
+		List<Entity> entities = new ArrayList<Entity>();
+		for (int i = 0; i < entityCount; i++) {
+			String[] references = new String[uniqueReferences
+					+ sharedReferences];
+			for (int j = 0; j < uniqueReferences; j++) {
+				references[j] = ORG + "entity-" + i + "/" + j;
+			}
+			for (int j = 0; j < sharedReferences; j++) {
+				references[uniqueReferences + j] = ORG + "shared/" + j;
+			}
+			entities.add(createEntity(PERSON + i, references));
+		}
+		RecordingEngine filtered = createEngine(entities, new RecordingEngine());
+		RecordingEngine singlePass = createEngine(entities,
+				new SinglePassEngine());
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			measure(filtered, entities);
+			measure(singlePass, entities);
+		}
+		long[] filteredNanos = new long[MEASURED_RUNS];
+		long[] filteredBytes = new long[MEASURED_RUNS];
+		long[] singlePassNanos = new long[MEASURED_RUNS];
+		long[] singlePassBytes = new long[MEASURED_RUNS];
+		for (int i = 0; i < MEASURED_RUNS; i++) {
+			// alternate the order to not favour one of the engines
+			if (i % 2 == 0) {
+				measure(filtered, entities, filteredNanos, filteredBytes, i);
+				measure(singlePass, entities, singlePassNanos,
+						singlePassBytes, i);
+			} else {
+				measure(singlePass, entities, singlePassNanos,
+						singlePassBytes, i);
+				measure(filtered, entities, filteredNanos, filteredBytes, i);
+			}
+		}
+		log.info("{} entities x {} references, median of {} runs: {} postings "
+				+ "in {}us allocating {} bytes with the filter, {} postings in "
+				+ "{}us allocating {} bytes in a single pass", new Object[] {
+				entityCount, uniqueReferences + sharedReferences,
+				MEASURED_RUNS, filtered.referencePostings,
+				median(filteredNanos) / 1000, median(filteredBytes),
+				singlePass.referencePostings, median(singlePassNanos) / 1000,
+				median(singlePassBytes) });
+
+		assertEquals(singlePass.correlationScores, filtered.correlationScores);
+		assertEquals(entityCount * uniqueReferences + sharedReferences,
+				singlePass.referencePostings);
+		assertTrue(filtered.referencePostings + " postings",
+				filtered.referencePostings < singlePass.referencePostings / 100);
+		if (median(filteredBytes) >= 0) {
+			assertTrue(median(filteredBytes) + " bytes allocated with the "
+					+ "filter, " + median(singlePassBytes) + " in a single pass",
+					median(filteredBytes) < median(singlePassBytes) / 2);
+		}
+	}
+
+	private RecordingEngine createEngine(List<Entity> entities,
+			RecordingEngine engine) throws Exception {
+		activate(engine, new FakeSite().addAll(entities),
+				Collections.<String, Object> emptyMap(), null);
+		engines.add(engine);
+		return engine;
+	}
+
+	private static void measure(RecordingEngine engine, List<Entity> entities)
+			throws Exception {
+		measure(engine, entities, new long[1], new long[1], 0);
+	}
+
+	/**
+	 * Processes a content item suggesting the parsed entities and stores the
+	 * duration and the bytes allocated by the current thread (<code>-1</code>
+	 * if not supported) at the parsed index
+	 */
+	private static void measure(RecordingEngine engine, List<Entity> entities,
+			long[] nanos, long[] bytes, int index) throws Exception {
+		ContentItem ci = createContentItem(createMetadata(entities, 0.5));
+		long bytesBefore = getAllocatedBytes();
+		long start = System.nanoTime();
+		engine.computeEnhancements(ci);
+		nanos[index] = System.nanoTime() - start;
+		bytes[index] = bytesBefore < 0 ? -1 : getAllocatedBytes()
+				- bytesBefore;
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread or <code>-1</code> if
+	 *         not supported by the JVM
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		if (!allocationBean.isThreadAllocatedMemorySupported()
+				|| !allocationBean.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		return allocationBean.getThreadAllocatedBytes(Thread.currentThread()
+				.getId());
+	}
+
+	private static long median(long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	private static Map<UriRef, Double> getConfidences(MGraph metadata) {
+		Map<UriRef, Double> confidences = new HashMap<UriRef, Double>();
+		Iterator<Triple> it = metadata.filter(null, ENHANCER_CONFIDENCE, null);
+		while (it.hasNext()) {
+			UriRef entityAnnotation = (UriRef) it.next().getSubject();
+			confidences.put(entityAnnotation, DisambiguationTestUtils
+					.getConfidence(metadata, entityAnnotation));
+		}
+		return confidences;
+	}
+
+	/**
+	 * Records the correlation scores of the entities and the number of
+	 * materialized references
+	 */
+	private static class RecordingEngine extends FOAFDisambiguationEngine {
+
+		private final Map<UriRef, Integer> correlationScores = new HashMap<UriRef, Integer>();
+		private int referencePostings;
+
+		@Override
+		public void caculateURICorrelationScoreForEntities(
+				DisambiguationContext context) {
+			referencePostings = getReferencePostingCount(context);
+			super.caculateURICorrelationScoreForEntities(context);
+		}
+
+		@Override
+		public void performEntityReferenceDisambiguation(EntityAnnotation ea,
+				int allUriReferences) {
+			super.performEntityReferenceDisambiguation(ea, allUriReferences);
+			correlationScores.put(ea.getEntityUri(), ea.getCorrelationScore());
+		}
+	}
+
+	/**
+	 * Processes the references as before the {@link ReferenceCountingFilter}
+	 * was introduced: a single pass over the references of each entity
+	 * materializing all of them.
+	 */
+	private static class SinglePassEngine extends RecordingEngine {
+
+		@Override
+		public void addEntityReferences(EntityAnnotation entityAnnotation,
+				ReferenceCountingFilter referenceFilter) {
+			// all references are processed by processEntityReferences
+		}
+
+		@Override
+		public void processEntityReferences(EntityAnnotation entityAnnotation,
+				ReferenceCountingFilter referenceFilter,
+				DisambiguationContext context) {
+			Map<String, Set<UriRef>> urisReferencedByEntities = context
+					.getUrisReferencedByEntities();
+			Representation entityRep = entityAnnotation.getEntity()
+					.getRepresentation();
+			Iterator<String> fields = entityRep.getFieldNames();
+			int linksFromEntity = 0;
+			while (fields.hasNext()) {
+				Iterator<Reference> urisReferenced = entityRep
+						.getReferences(fields.next());
+				while (urisReferenced.hasNext()) {
+					linksFromEntity++;
+					String referenceString = urisReferenced.next()
+							.getReference();
+					Set<UriRef> eas = urisReferencedByEntities
+							.get(referenceString);
+					if (eas == null) {
+						eas = new HashSet<UriRef>();
+						urisReferencedByEntities.put(referenceString, eas);
+					}
+					eas.add(entityAnnotation.getEntityUri());
+				}
+			}
+			entityAnnotation.setReferencesFromEntity(linksFromEntity);
+		}
+	}
+}
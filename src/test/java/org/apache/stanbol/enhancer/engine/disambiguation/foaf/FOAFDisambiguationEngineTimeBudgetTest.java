@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.activate;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.addEntityAnnotation;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.addTextAnnotation;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createContentItem;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.createEntity;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.getConfidence;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.clerezza.rdf.core.MGraph;
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.clerezza.rdf.core.impl.SimpleMGraph;
+import org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.FakeSite;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests that the engine produces partial results if the Entityhub does not
+ * respond within the configured time budget or the fetch queue is full.
+ */
+public class FOAFDisambiguationEngineTimeBudgetTest {
+
+	private static final int TIME_BUDGET = 500;
+	private static final double ORIGINAL_CONFIDENCE = 0.5;
+
+	private static final String ALICE = "http://example.org/person/alice";
+	private static final String BOB = "http://example.org/person/bob";
+	private static final String HANGING_1 = "http://example.org/person/hanging-1";
+	private static final String HANGING_2 = "http://example.org/person/hanging-2";
+	private static final String HANGING_3 = "http://example.org/person/hanging-3";
+	private static final String COMMON_REFERENCE = "http://example.org/organization/acme";
+
+	private final FakeSite site = new FakeSite()
+			.add(createEntity(ALICE, COMMON_REFERENCE))
+			.add(createEntity(BOB, COMMON_REFERENCE))
+			.hang(HANGING_1, HANGING_2, HANGING_3);
+	private FOAFDisambiguationEngine engine;
+
+	@After
+	public void tearDown() {
+		if (engine != null) {
+			engine.deactivate(null);
+		}
+	}
+
+	@Test
+	public void testPartialResultsOnHangingSite() throws Exception {
+		activateEngine(8, 100);
+		MGraph metadata = new SimpleMGraph();
+		UriRef textAnnotation = addTextAnnotation(metadata, "Alice");
+		UriRef alice = addEntityAnnotation(metadata, textAnnotation, ALICE,
+				ORIGINAL_CONFIDENCE);
+		UriRef bob = addEntityAnnotation(metadata, textAnnotation, BOB,
+				ORIGINAL_CONFIDENCE);
+		UriRef hanging = addEntityAnnotation(metadata, textAnnotation,
+				HANGING_1, ORIGINAL_CONFIDENCE);
+
+		long duration = computeEnhancements(metadata);
+
+		assertTrue("computeEnhancements took " + duration + "ms",
+				duration < TIME_BUDGET * 4);
+		assertEquals(1, engine.getDegradedContentItemCount());
+		// the entity without data keeps its original confidence
+		assertEquals(ORIGINAL_CONFIDENCE, getConfidence(metadata, hanging), 0.0);
+		// the dereferenced entities were disambiguated. They have no foaf:name
+		// and no normalized correlation score (both share the only reference),
+		// so only 1/5 of the original confidence is left
+		assertEquals(ORIGINAL_CONFIDENCE / 5, getConfidence(metadata, alice),
+				1e-9);
+		assertEquals(ORIGINAL_CONFIDENCE / 5, getConfidence(metadata, bob),
+				1e-9);
+	}
+
+	@Test
+	public void testRunningFetchReusedByLaterContentItem() throws Exception {
+		activateEngine(8, 100);
+		for (int i = 0; i < 3; i++) {
+			MGraph metadata = new SimpleMGraph();
+			UriRef textAnnotation = addTextAnnotation(metadata, "Alice");
+			addEntityAnnotation(metadata, textAnnotation, ALICE,
+					ORIGINAL_CONFIDENCE);
+			addEntityAnnotation(metadata, textAnnotation, HANGING_1,
+					ORIGINAL_CONFIDENCE);
+			computeEnhancements(metadata);
+		}
+		assertEquals(3, engine.getDegradedContentItemCount());
+		// the hanging request is still running and was not sent again
+		assertEquals(1, site.getRequests(HANGING_1));
+		// later content items use the cached entity
+		assertEquals(1, site.getRequests(ALICE));
+	}
+
+	@Test
+	public void testFullFetchQueue() throws Exception {
+		// one thread and one queued fetch
+		activateEngine(1, 1);
+		MGraph metadata = new SimpleMGraph();
+		UriRef textAnnotation = addTextAnnotation(metadata, "Alice");
+		addEntityAnnotation(metadata, textAnnotation, HANGING_1,
+				ORIGINAL_CONFIDENCE);
+		addEntityAnnotation(metadata, textAnnotation, HANGING_2,
+				ORIGINAL_CONFIDENCE);
+		addEntityAnnotation(metadata, textAnnotation, HANGING_3,
+				ORIGINAL_CONFIDENCE);
+		computeEnhancements(metadata);
+		assertEquals(1, engine.getDegradedContentItemCount());
+		assertEquals(0, site.getRequests(HANGING_3));
+
+		// the thread and the queue are still occupied
+		metadata = new SimpleMGraph();
+		UriRef alice = addEntityAnnotation(metadata,
+				addTextAnnotation(metadata, "Alice"), ALICE,
+				ORIGINAL_CONFIDENCE);
+		long duration = computeEnhancements(metadata);
+
+		// rejected fetches are not waited for
+		assertTrue("computeEnhancements took " + duration + "ms",
+				duration < TIME_BUDGET);
+		assertEquals(2, engine.getDegradedContentItemCount());
+		assertEquals(0, site.getRequests(ALICE));
+		assertEquals(ORIGINAL_CONFIDENCE, getConfidence(metadata, alice), 0.0);
+	}
+
+	private void activateEngine(int fetchThreads, int fetchQueueSize)
+			throws Exception {
+		Map<String, Object> config = new HashMap<String, Object>();
+		config.put(FOAFDisambiguationEngine.CONTENT_ITEM_TIME_BUDGET,
+				TIME_BUDGET);
+		config.put(FOAFDisambiguationEngine.FETCH_THREADS, fetchThreads);
+		config.put(FOAFDisambiguationEngine.FETCH_QUEUE_SIZE, fetchQueueSize);
+		engine = new FOAFDisambiguationEngine();
+		activate(engine, site, config, null);
+	}
+
+	private long computeEnhancements(MGraph metadata) throws Exception {
+		long start = System.currentTimeMillis();
+		engine.computeEnhancements(createContentItem(metadata));
+		return System.currentTimeMillis() - start;
+	}
+}
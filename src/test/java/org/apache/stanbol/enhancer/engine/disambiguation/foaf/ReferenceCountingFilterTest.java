@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReferenceCountingFilterTest {
+
+	private static final int NUM_REFERENCES = 10000;
+
+	@Test
+	public void testReferencesAddedTwiceAreReported() {
+		ReferenceCountingFilter filter = new ReferenceCountingFilter(
+				NUM_REFERENCES * 2);
+		for (int i = 0; i < NUM_REFERENCES; i++) {
+			filter.add("http://example.org/person/" + i);
+			filter.add("http://example.org/person/" + i);
+		}
+		for (int i = 0; i < NUM_REFERENCES; i++) {
+			assertTrue(filter.seenAtLeastTwice("http://example.org/person/" + i));
+		}
+	}
+
+	@Test
+	public void testReferencesAddedOnceAreMostlySkipped() {
+		ReferenceCountingFilter filter = new ReferenceCountingFilter(
+				NUM_REFERENCES);
+		for (int i = 0; i < NUM_REFERENCES; i++) {
+			filter.add("http://example.org/person/" + i);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < NUM_REFERENCES; i++) {
+			if (filter.seenAtLeastTwice("http://example.org/person/" + i)) {
+				falsePositives++;
+			}
+		}
+		// about 1% expected, allow some slack
+		assertTrue("too many false positives: " + falsePositives,
+				falsePositives < NUM_REFERENCES / 20);
+		assertFalse(filter.seenAtLeastTwice("http://example.org/unknown"));
+	}
+
+	@Test
+	public void testGrowsBeyondExpectedReferences() {
+		// sized for a tenth of the references
+		ReferenceCountingFilter filter = new ReferenceCountingFilter(
+				NUM_REFERENCES / 10);
+		for (int i = 0; i < NUM_REFERENCES; i++) {
+			filter.add("http://example.org/person/" + i);
+		}
+		// the second occurrences are added to other slices than the first ones
+		for (int i = 0; i < NUM_REFERENCES; i += 2) {
+			filter.add("http://example.org/person/" + i);
+		}
+		assertTrue(filter.getSliceCount() > 1);
+		int falsePositives = 0;
+		for (int i = 0; i < NUM_REFERENCES; i++) {
+			boolean seenAtLeastTwice = filter
+					.seenAtLeastTwice("http://example.org/person/" + i);
+			if (i % 2 == 0) {
+				assertTrue(seenAtLeastTwice);
+			} else if (seenAtLeastTwice) {
+				falsePositives++;
+			}
+		}
+		assertTrue("too many false positives: " + falsePositives,
+				falsePositives < NUM_REFERENCES / 20);
+	}
+}
@@ -0,0 +1,332 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.stanbol.enhancer.engine.disambiguation.foaf;
+
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.addEntityAnnotation;
+import static org.apache.stanbol.enhancer.engine.disambiguation.foaf.DisambiguationTestUtils.addTextAnnotation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.clerezza.rdf.core.LiteralFactory;
+import org.apache.clerezza.rdf.core.MGraph;
+import org.apache.clerezza.rdf.core.TripleCollection;
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.clerezza.rdf.core.impl.SimpleMGraph;
+import org.apache.stanbol.enhancer.servicesapi.helper.EnhancementEngineHelper;
+import org.apache.stanbol.enhancer.servicesapi.rdf.Properties;
+import org.apache.stanbol.entityhub.servicesapi.model.Entity;
+import org.apache.stanbol.entityhub.servicesapi.model.rdf.RdfResourceEnum;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the {@link SuggestionTable}
+ */
+public class SuggestionTableTest {
+
+	private static final Logger log = LoggerFactory
+			.getLogger(SuggestionTableTest.class);
+
+	private static final String SITE = "dbpedia";
+	private static final String TYPE = "http://xmlns.com/foaf/0.1/Person";
+
+	@Test
+	public void testGrow() {
+		SuggestionTable table = new SuggestionTable(2);
+		int rows = 100;
+		for (int i = 0; i < rows; i++) {
+			int row = table.addRow();
+			assertEquals(i, row);
+			fillRow(table, row);
+		}
+		assertEquals(rows, table.size());
+		for (int row = 0; row < rows; row++) {
+			assertEquals(new UriRef("urn:test:entity:" + row),
+					table.getEntityUri(row));
+			assertEquals(new UriRef("urn:test:entity-annotation:" + row),
+					table.getUriLink(row));
+			assertEquals("label " + row, table.getEntityLabel(row));
+			assertEquals(SITE, table.getSite(row));
+			assertEquals(TYPE, table.getEntityType(row));
+			assertEquals(row / 100.0, table.getOriginalConfidence(row), 0.0);
+			assertEquals(row, table.getCorrelationScore(row));
+			assertEquals(row * 2, table.getReferencesFromEntity(row));
+		}
+	}
+
+	@Test
+	public void testInterning() {
+		SuggestionTable table = new SuggestionTable();
+		int row1 = table.addRow();
+		int row2 = table.addRow();
+		table.setSite(row1, new String(SITE));
+		table.setSite(row2, new String(SITE));
+		table.setEntityType(row1, new String(SITE));
+		table.setEntityType(row2, new String(TYPE));
+		// equal values share the same instance
+		assertSame(table.getSite(row1), table.getSite(row2));
+		assertSame(table.getSite(row1), table.getEntityType(row1));
+		assertEquals(TYPE, table.getEntityType(row2));
+	}
+
+	@Test
+	public void testNoId() {
+		SuggestionTable table = new SuggestionTable();
+		int row = table.addRow();
+		// new rows have no site and type
+		assertNull(table.getSite(row));
+		assertNull(table.getEntityType(row));
+		table.setSite(row, SITE);
+		table.setEntityType(row, TYPE);
+		table.setSite(row, null);
+		table.setEntityType(row, null);
+		assertNull(table.getSite(row));
+		assertNull(table.getEntityType(row));
+	}
+
+	/**
+	 * Counts the bytes allocated by the current thread while creating and
+	 * disambiguating suggestions the way the engine does: once with the
+	 * {@link EntityAnnotation} views on a {@link SuggestionTable} and once with
+	 * {@link BoxedEntityAnnotation}s, a copy of the former layout storing the
+	 * values in objects with boxed Double fields. Skipped if the JVM does not
+	 * support measuring the thread allocation.
+	 */
+	@Test
+	public void testAllocation() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported()
+				&& allocationBean.isThreadAllocatedMemoryEnabled());
+		int rows = 100000;
+		// both layouts read the same entity annotations from a small graph,
+		// so that the lookups in the graph allocate the same for both
+		MGraph metadata = new SimpleMGraph();
+		UriRef textAnnotation = addTextAnnotation(metadata, "Alice");
+		UriRef[] uris = new UriRef[10];
+		for (int i = 0; i < uris.length; i++) {
+			uris[i] = addEntityAnnotation(metadata, textAnnotation,
+					"urn:test:entity:" + i, 0.5);
+		}
+		// warm up
+		for (int i = 0; i < 5; i++) {
+			lookup(metadata, uris, 1000);
+			disambiguateTable(metadata, uris, 1000);
+			disambiguateBoxed(metadata, uris, 1000);
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = allocationBean.getThreadAllocatedBytes(threadId);
+		lookup(metadata, uris, rows);
+		long lookupBytes = allocationBean.getThreadAllocatedBytes(threadId)
+				- before;
+		before = allocationBean.getThreadAllocatedBytes(threadId);
+		double tableConfidence = disambiguateTable(metadata, uris, rows);
+		long tableBytes = allocationBean.getThreadAllocatedBytes(threadId)
+				- before;
+		before = allocationBean.getThreadAllocatedBytes(threadId);
+		double boxedConfidence = disambiguateBoxed(metadata, uris, rows);
+		long boxedBytes = allocationBean.getThreadAllocatedBytes(threadId)
+				- before;
+		// the graph lookups allocate the same for both layouts and are
+		// subtracted to log the bytes per suggestion of the layouts
+		log.info("{} suggestions: {} bytes allocated with the table ({} bytes "
+				+ "per suggestion), {} bytes with boxed fields ({} bytes per "
+				+ "suggestion)", new Object[] { rows, tableBytes,
+				(double) (tableBytes - lookupBytes) / rows, boxedBytes,
+				(double) (boxedBytes - lookupBytes) / rows });
+		assertEquals(boxedConfidence, tableConfidence, 1e-6);
+		assertTrue(tableBytes + " bytes with the table, " + boxedBytes
+				+ " bytes with boxed fields", tableBytes < boxedBytes);
+	}
+
+	/**
+	 * Only the graph lookups of
+	 * {@link EntityAnnotation#createFromUri(SuggestionTable, TripleCollection, UriRef)}
+	 */
+	private static int lookup(MGraph metadata, UriRef[] uris, int rows) {
+		LiteralFactory lf = LiteralFactory.getInstance();
+		UriRef site = new UriRef(RdfResourceEnum.site.getUri());
+		int found = 0;
+		for (int i = 0; i < rows; i++) {
+			UriRef uri = uris[i % uris.length];
+			if (EnhancementEngineHelper.getReference(metadata, uri,
+					Properties.ENHANCER_ENTITY_REFERENCE) != null
+					&& EnhancementEngineHelper.get(metadata, uri,
+							Properties.ENHANCER_CONFIDENCE, Double.class, lf) != null
+					&& EnhancementEngineHelper.getString(metadata, uri, site) != null) {
+				found++;
+			}
+			EnhancementEngineHelper.getString(metadata, uri,
+					Properties.ENHANCER_ENTITY_TYPE);
+			EnhancementEngineHelper.getString(metadata, uri,
+					Properties.ENHANCER_ENTITY_LABEL);
+		}
+		return found;
+	}
+
+	/**
+	 * Creates and disambiguates the suggestions with the
+	 * {@link EntityAnnotation} views on a {@link SuggestionTable}
+	 *
+	 * @return the sum of the disambiguated confidences
+	 */
+	private static double disambiguateTable(MGraph metadata, UriRef[] uris,
+			int rows) {
+		SuggestionTable table = new SuggestionTable();
+		EntityAnnotation[] suggestions = new EntityAnnotation[rows];
+		for (int i = 0; i < rows; i++) {
+			suggestions[i] = EntityAnnotation.createFromUri(table, metadata,
+					uris[i % uris.length]);
+		}
+		double sum = 0;
+		for (int i = 0; i < rows; i++) {
+			EntityAnnotation suggestion = suggestions[i];
+			suggestion.setFoafNameDisambiguationScore(1.0);
+			suggestion.setReferencesFromEntity(i % 7);
+			suggestion.increaseCorrelationScore(i % 3);
+			suggestion.calculateFoafNameDisambiguatedConfidence();
+			suggestion.calculateEntityReferenceDisambiguatedConfidence(2, 0);
+			suggestion.calculateDisambiguatedConfidence();
+			sum += suggestion.getDisambiguatedConfidence();
+		}
+		return sum;
+	}
+
+	/**
+	 * Same as {@link #disambiguateTable(MGraph, UriRef[], int)} with
+	 * {@link BoxedEntityAnnotation}s
+	 */
+	private static double disambiguateBoxed(MGraph metadata, UriRef[] uris,
+			int rows) {
+		BoxedEntityAnnotation[] suggestions = new BoxedEntityAnnotation[rows];
+		for (int i = 0; i < rows; i++) {
+			suggestions[i] = BoxedEntityAnnotation.createFromUri(metadata,
+					uris[i % uris.length]);
+		}
+		double sum = 0;
+		for (int i = 0; i < rows; i++) {
+			BoxedEntityAnnotation suggestion = suggestions[i];
+			suggestion.foafNameDisambiguationScore = 1.0;
+			suggestion.referencesFromEntity = i % 7;
+			suggestion.correlationScore += i % 3;
+			suggestion.calculateFoafNameDisambiguatedConfidence();
+			suggestion.calculateEntityReferenceDisambiguatedConfidence(2, 0);
+			suggestion.calculateDisambiguatedConfidence();
+			sum += suggestion.disambiguatedConfidence;
+		}
+		return sum;
+	}
+
+	private static void fillRow(SuggestionTable table, int row) {
+		table.setEntityUri(row, new UriRef("urn:test:entity:" + row));
+		table.setUriLink(row, new UriRef("urn:test:entity-annotation:" + row));
+		table.setEntityLabel(row, "label " + row);
+		table.setSite(row, SITE);
+		table.setEntityType(row, TYPE);
+		table.setOriginalConfidence(row, row / 100.0);
+		table.setDisambiguatedConfidence(row, row / 50.0);
+		table.setCorrelationScore(row, row);
+		table.setReferencesFromEntity(row, row * 2);
+	}
+
+	/**
+	 * The fields and calculations of the {@link EntityAnnotation} before its
+	 * values were moved to the {@link SuggestionTable}
+	 */
+	private static class BoxedEntityAnnotation {
+
+		private static final double TOTAL_RATIO = EntityAnnotation.FOAFNAME_DISAMBIGUATION_RATIO
+				+ EntityAnnotation.ORIGINAL_CONFIDNECE_RATIO
+				+ EntityAnnotation.URI_CORRELATION_DISAMBIGUATION_RATIO;
+		private static final LiteralFactory lf = LiteralFactory.getInstance();
+		private static final UriRef ENTITYHUB_SITE = new UriRef(
+				RdfResourceEnum.site.getUri());
+
+		private double foafNameDisambiguationWeight = EntityAnnotation.FOAFNAME_DISAMBIGUATION_RATIO
+				/ TOTAL_RATIO;
+		private double uriCorrelationDisambiguationWeight = EntityAnnotation.URI_CORRELATION_DISAMBIGUATION_RATIO
+				/ TOTAL_RATIO;
+		private double confidenceWeight = EntityAnnotation.ORIGINAL_CONFIDNECE_RATIO
+				/ TOTAL_RATIO;
+
+		private UriRef uriLink;
+		private UriRef entityUri;
+		private Entity entity;
+
+		private Double originalConfidence = 0.0;
+		private Double foafNameDisambiguationScore = 0.0;
+		private Double disambiguatedConfidence = 0.0;
+		private Double entityReferenceDisambiguatedConfidence = 0.0;
+		private Double foafNameDisambiguatedConfidence = 0.0;
+		private int correlationScore;
+		private int referencesFromEntity;
+		private String site;
+		private String entityType;
+		private String entityLabel;
+
+		static BoxedEntityAnnotation createFromUri(TripleCollection graph,
+				UriRef uri) {
+			BoxedEntityAnnotation entityAnnotation = new BoxedEntityAnnotation();
+			entityAnnotation.uriLink = uri;
+			entityAnnotation.entityUri = EnhancementEngineHelper.getReference(
+					graph, uri, Properties.ENHANCER_ENTITY_REFERENCE);
+			if (entityAnnotation.entityUri == null) {
+				return null;
+			}
+			entityAnnotation.originalConfidence = EnhancementEngineHelper
+					.get(graph, uri, Properties.ENHANCER_CONFIDENCE,
+							Double.class, lf);
+			if (entityAnnotation.originalConfidence == null) {
+				entityAnnotation.originalConfidence = 0.0;
+			}
+			entityAnnotation.site = EnhancementEngineHelper.getString(graph,
+					uri, ENTITYHUB_SITE);
+			entityAnnotation.entityType = EnhancementEngineHelper.getString(
+					graph, uri, Properties.ENHANCER_ENTITY_TYPE);
+			entityAnnotation.entityLabel = EnhancementEngineHelper.getString(
+					graph, uri, Properties.ENHANCER_ENTITY_LABEL);
+			return entityAnnotation;
+		}
+
+		void calculateDisambiguatedConfidence() {
+			this.disambiguatedConfidence = (originalConfidence * confidenceWeight)
+					+ this.foafNameDisambiguatedConfidence
+					+ this.entityReferenceDisambiguatedConfidence;
+		}
+
+		void calculateFoafNameDisambiguatedConfidence() {
+			this.foafNameDisambiguatedConfidence = (foafNameDisambiguationScore * foafNameDisambiguationWeight);
+		}
+
+		void calculateEntityReferenceDisambiguatedConfidence(int max, int min) {
+			if ((max - min) > 0) {
+				double normalizedCorrelationScore = (correlationScore - min)
+						/ (max - min);
+				this.entityReferenceDisambiguatedConfidence = (normalizedCorrelationScore * uriCorrelationDisambiguationWeight);
+			}
+		}
+	}
+}